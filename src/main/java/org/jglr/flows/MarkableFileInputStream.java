@@ -3,30 +3,160 @@ package org.jglr.flows;
 import java.io.FileInputStream;
 import java.io.FilterInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 /**
  * A <code>MarkableFileInputStream</code> provides a way to mark and reset FileInputStreams thanks to a {@link FileChannel} instance.<br/>
+ * Bytes are read through a buffer, with positional reads of the channel: the buffer keeps the position of its first
+ * byte in the file, so seeking or resetting to a position which is still buffered does not touch the file at all.
+ * Reads of at least the size of the buffer go straight to the destination array. The position of the channel itself
+ * is never changed.<br/>
+ * Like {@link FileInputStream}, this stream is not meant to be used by several threads at the same time.
  *
  * <a href="http://stackoverflow.com/questions/1094703/java-file-input-with-rewind-reset-capability">Stackoverflow question regarding
  * marking and resetting FileInputStreams</a>
  * @author ykaganovich
  */
 public class MarkableFileInputStream extends FilterInputStream {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
     private FileChannel fileChannel;
     private long mark = -1;
+    private final ByteBuffer buffer;
+    /**
+     * Position in the file of the first byte of the buffer
+     */
+    private long bufferStart;
+    /**
+     * Index in the buffer of the next byte to read
+     */
+    private int bufferIndex;
+    /**
+     * Number of valid bytes in the buffer
+     */
+    private int bufferCount;
 
     public MarkableFileInputStream(FileInputStream fis) {
+        this(fis, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new instance of MarkableFileInputStream, reading from the current position of <code>fis</code>
+     * @param bufferSize
+     *          The size of the buffer
+     */
+    public MarkableFileInputStream(FileInputStream fis, int bufferSize) {
         super(fis);
+        if(bufferSize <= 0)
+            throw new IllegalArgumentException("The buffer size must be positive: "+bufferSize);
         fileChannel = fis.getChannel();
+        buffer = ByteBuffer.allocate(bufferSize);
+        try {
+            bufferStart = fileChannel.position();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
     }
 
     public long getMark() {
         return mark;
     }
 
-    public synchronized void seek(long position) throws IOException {
-        fileChannel.position(position);
+    /**
+     * Returns the position in the file of the next byte to read
+     */
+    public long getPosition() {
+        return bufferStart + bufferIndex;
+    }
+
+    public void seek(long position) throws IOException {
+        if(position < 0)
+            throw new IOException("Negative position: "+position);
+        if(position >= bufferStart && position <= bufferStart + bufferCount) {
+            bufferIndex = (int) (position - bufferStart);
+        } else {
+            bufferStart = position;
+            bufferIndex = 0;
+            bufferCount = 0;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if(bufferIndex >= bufferCount && fill() <= 0)
+            return -1;
+        return buffer.get(bufferIndex++) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(off < 0 || len < 0 || len > b.length - off)
+            throw new IndexOutOfBoundsException();
+        if(len == 0)
+            return 0;
+        int total = 0;
+        while(total < len) {
+            int buffered = bufferCount - bufferIndex;
+            if(buffered > 0) {
+                int count = Math.min(buffered, len - total);
+                System.arraycopy(buffer.array(), bufferIndex, b, off + total, count);
+                bufferIndex += count;
+                total += count;
+                continue;
+            }
+            int read;
+            if(len - total >= buffer.capacity()) {
+                // large enough to skip the buffer
+                long position = getPosition();
+                read = fileChannel.read(ByteBuffer.wrap(b, off + total, len - total), position);
+                if(read > 0) {
+                    bufferStart = position + read;
+                    bufferIndex = 0;
+                    bufferCount = 0;
+                    total += read;
+                }
+            } else {
+                read = fill();
+            }
+            if(read <= 0)
+                break;
+        }
+        return total == 0 ? -1 : total;
+    }
+
+    /**
+     * Fills the buffer with the bytes following the current position
+     * @return
+     *          The number of bytes read, -1 at the end of the file
+     */
+    private int fill() throws IOException {
+        long position = getPosition();
+        buffer.clear();
+        int read = fileChannel.read(buffer, position);
+        bufferStart = position;
+        bufferIndex = 0;
+        bufferCount = Math.max(0, read);
+        return read;
+    }
+
+    /**
+     * Skips up to <code>n</code> bytes without reading them, stopping at the end of the file
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        if(n <= 0)
+            return 0;
+        long position = getPosition();
+        long count = Math.min(n, Math.max(0, fileChannel.size() - position));
+        seek(position + count);
+        return count;
+    }
+
+    @Override
+    public int available() throws IOException {
+        long remaining = Math.max(0, fileChannel.size() - getPosition());
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(remaining, bufferCount - bufferIndex));
     }
 
     @Override
@@ -34,21 +164,22 @@ public class MarkableFileInputStream extends FilterInputStream {
         return true;
     }
 
+    /**
+     * Remembers the current position. The limit is ignored: the stream can always go back to a marked position
+     */
     @Override
-    public synchronized void mark(int readlimit) {
-        try {
-            mark = fileChannel.position();
-        } catch (IOException ex) {
-            ex.printStackTrace();
-            mark = -1;
-        }
+    public void mark(int readlimit) {
+        mark = getPosition();
     }
 
+    /**
+     * Goes back to the marked position, without any I/O if it is still in the buffer
+     */
     @Override
-    public synchronized void reset() throws IOException {
+    public void reset() throws IOException {
         if (mark == -1) {
             throw new IOException("Cannot reset if the stream is not yet marked");
         }
-        fileChannel.position(mark);
+        seek(mark);
     }
-}
\ No newline at end of file
+}
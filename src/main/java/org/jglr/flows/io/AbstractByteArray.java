@@ -0,0 +1,1680 @@
+package org.jglr.flows.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Base class of the resizable and growable byte arrays.<br/>
+ * Handles the read and write indexes, the byte order and the encoding of other primitives than <code>byte</code>,
+ * while subclasses decide where the bytes are actually stored (see {@link ByteArray} for a heap array and
+ * {@link DirectByteArray} for direct memory).<br/>
+ * The capacity of the storage grows geometrically (see {@link #setGrowthFactor(float)}) so that appending
+ * bytes one by one has an amortized constant cost. The logical size ({@link #length()}) only covers the bytes that
+ * have actually been written.<br/>
+ * Words (shorts, ints, longs, floats and doubles) are laid out as described by the current {@link ByteOrder}: with
+ * {@link ByteOrder#BIG_ENDIAN}, the most significant byte comes first. Versions of {@link ByteArray} before the word
+ * readers were added wrote ints and longs in the opposite order, so data written by them has to be read with the
+ * other byte order.
+ */
+public abstract class AbstractByteArray implements Comparable<AbstractByteArray> {
+
+    /**
+     * Default factor applied to the capacity when the storage needs to grow
+     */
+    public static final float DEFAULT_GROWTH_FACTOR = 2f;
+
+    /**
+     * Largest capacity a byte array can reach by default. Some VMs reserve header words in arrays, so we stay slightly
+     * below {@link Integer#MAX_VALUE}
+     */
+    public static final int DEFAULT_MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    /**
+     * Minimal number of bytes added to the capacity when growing, so that small arrays do not reallocate on every write
+     */
+    private static final int MINIMUM_GROWTH = 16;
+
+    ByteOrder byteOrder;
+    int writeCursor;
+    int readCursor;
+    int size;
+    private float growthFactor = DEFAULT_GROWTH_FACTOR;
+    private int maxCapacity = DEFAULT_MAX_CAPACITY;
+
+    AbstractByteArray() {
+        byteOrder = ByteOrder.nativeOrder();
+    }
+
+    /**
+     * Creates an empty byte array stored on the heap
+     * @param capacity
+     *          The initial capacity
+     * @return
+     *          A new {@link ByteArray}
+     */
+    public static AbstractByteArray allocate(int capacity) {
+        return new ByteArray(capacity);
+    }
+
+    /**
+     * Creates an empty byte array stored outside of the heap
+     * @param capacity
+     *          The initial capacity
+     * @return
+     *          A new {@link DirectByteArray}
+     */
+    public static AbstractByteArray allocateDirect(int capacity) {
+        return new DirectByteArray(capacity);
+    }
+
+    /**
+     * Returns the byte stored at the given index, without checking it against the length
+     * @param index
+     *          The index
+     * @return
+     *          The stored byte
+     */
+    protected abstract byte getByte(int index);
+
+    /**
+     * Stores a byte at the given index, without growing the storage nor updating the length
+     * @param index
+     *          The index
+     * @param b
+     *          The byte to store
+     */
+    protected abstract void setByte(int index, byte b);
+
+    /**
+     * Returns the number of bytes the storage can hold before having to grow
+     * @return
+     *          The current capacity
+     */
+    public abstract int capacity();
+
+    /**
+     * Reallocates the storage so that it can hold exactly <code>newCapacity</code> bytes, keeping its current contents
+     * (truncated if the new capacity is smaller)
+     * @param newCapacity
+     *          The new capacity
+     */
+    protected abstract void reallocate(int newCapacity);
+
+    /**
+     * Writes the <code>byteCount</code> lowest bytes of a value into the storage, while respecting the byte order
+     * @param index
+     *          The index of the first byte to write
+     * @param value
+     *          Value to write
+     * @param byteCount
+     *          The number of bytes used to represent the value
+     *
+     * @see #getByteOrder()
+     * @see #setByteOrder(ByteOrder)
+     */
+    protected void writeWord(int index, long value, int byteCount) {
+        if(byteOrder == ByteOrder.BIG_ENDIAN) {
+            for (int i = 0; i < byteCount; i++) {
+                setByte(index + i, (byte) (value >>> (8*(byteCount-i-1))));
+            }
+        } else {
+            for (int i = 0; i < byteCount; i++) {
+                setByte(index + i, (byte) (value >>> (8*i)));
+            }
+        }
+    }
+
+    /**
+     * Reads a value encoded on <code>byteCount</code> bytes from the storage, while respecting the byte order
+     * @param index
+     *          The index of the first byte to read
+     * @param byteCount
+     *          The number of bytes used to represent the value
+     * @return
+     *          The value, zero-extended to a long
+     *
+     * @see #getByteOrder()
+     * @see #setByteOrder(ByteOrder)
+     */
+    protected long readWord(int index, int byteCount) {
+        long value = 0L;
+        if(byteOrder == ByteOrder.BIG_ENDIAN) {
+            for (int i = 0; i < byteCount; i++) {
+                value = (value << 8) | (getByte(index + i) & 0xFFL);
+            }
+        } else {
+            for (int i = byteCount-1; i >= 0; i--) {
+                value = (value << 8) | (getByte(index + i) & 0xFFL);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Copies bytes from an array into the storage, without growing it nor updating the length
+     * @param index
+     *          The index of the first byte to write
+     * @param src
+     *          The bytes to copy
+     * @param offset
+     *          The index in <code>src</code> of the first byte to copy
+     * @param length
+     *          The number of bytes to copy
+     */
+    protected void writeBytes(int index, byte[] src, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            setByte(index + i, src[offset + i]);
+        }
+    }
+
+    /**
+     * Copies bytes from the storage into an array
+     * @param index
+     *          The index of the first byte to read
+     * @param dst
+     *          The array to copy to
+     * @param offset
+     *          The index in <code>dst</code> of the first byte to copy
+     * @param length
+     *          The number of bytes to copy
+     */
+    protected void readBytes(int index, byte[] dst, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[offset + i] = getByte(index + i);
+        }
+    }
+
+    /**
+     * Copies bytes from the storage into the storage of another byte array, without growing it nor updating its length
+     * @param index
+     *          The index of the first byte to read
+     * @param dst
+     *          The byte array to copy to
+     * @param dstIndex
+     *          The index in <code>dst</code> of the first byte to write
+     * @param length
+     *          The number of bytes to copy
+     */
+    protected void copyTo(int index, AbstractByteArray dst, int dstIndex, int length) {
+        for (int i = 0; i < length; i++) {
+            dst.setByte(dstIndex + i, getByte(index + i));
+        }
+    }
+
+    /**
+     * Returns a {@link ByteBuffer} sharing the bytes of the storage between <code>index</code> and
+     * <code>index+length</code>, with its position at 0 and its limit at <code>length</code>.<br/>
+     * Subclasses which cannot share their storage this way may return a copy, which is what this implementation does.
+     * @param index
+     *          The index of the first byte of the view
+     * @param length
+     *          The number of bytes of the view
+     * @return
+     *          A buffer over the requested bytes, in no particular byte order
+     */
+    protected ByteBuffer bufferView(int index, int length) {
+        byte[] copy = new byte[length];
+        readBytes(index, copy, 0, length);
+        return ByteBuffer.wrap(copy);
+    }
+
+    /**
+     * Adds to <code>buffers</code> one or more buffers sharing the bytes of the storage between <code>index</code> and
+     * <code>index+length</code>, in order
+     * @param index
+     *          The index of the first byte
+     * @param length
+     *          The number of bytes
+     * @param buffers
+     *          The list to add the buffers to
+     */
+    void collectBuffers(int index, int length, List<ByteBuffer> buffers) {
+        buffers.add(bufferView(index, length));
+    }
+
+    /**
+     * Returns a buffer over the whole storage, in which the absolute index of each byte is its index in this byte
+     * array, or <code>null</code> if the storage is not contiguous. Used by searches and comparisons to read the
+     * storage one word at a time without allocating anything.
+     * @return
+     *          A buffer over the storage, in any byte order, or <code>null</code>
+     */
+    ByteBuffer storageBuffer() {
+        return null;
+    }
+
+    /**
+     * Returns a {@link ByteBuffer} sharing the readable bytes of this byte array, that is the bytes between the read
+     * index and the write index. The buffer respects the byte order of this byte array, and its position and limit
+     * are independent from the indexes of this byte array.
+     * @return
+     *          A buffer over the readable bytes
+     */
+    public ByteBuffer asByteBuffer() {
+        ByteBuffer buffer = bufferView(readCursor, writeCursor - readCursor).order(byteOrder);
+        return isReadOnly() ? buffer.asReadOnlyBuffer().order(byteOrder) : buffer;
+    }
+
+    /**
+     * Returns {@link ByteBuffer}s sharing the readable bytes of this byte array, that is the bytes between the read
+     * index and the write index, in order. Byte arrays made of several parts (see {@link CompositeByteArray}) return
+     * one buffer per part instead of copying them into a single buffer.
+     * @return
+     *          Buffers over the readable bytes
+     */
+    public ByteBuffer[] asByteBuffers() {
+        List<ByteBuffer> buffers = new ArrayList<>(1);
+        collectBuffers(readCursor, writeCursor - readCursor, buffers);
+        ByteBuffer[] result = new ByteBuffer[buffers.size()];
+        for (int i = 0; i < result.length; i++) {
+            ByteBuffer buffer = buffers.get(i).order(byteOrder);
+            result[i] = isReadOnly() ? buffer.asReadOnlyBuffer().order(byteOrder) : buffer;
+        }
+        return result;
+    }
+
+    /**
+     * Writes the readable bytes of this byte array to the given channel, moving the read index past the bytes
+     * actually written.<br/>
+     * Stops early if the channel is non-blocking and cannot accept more bytes.
+     * @param channel
+     *          The channel to write to
+     * @return
+     *          The number of bytes written
+     * @throws IOException
+     *          If the channel throws an IOException
+     */
+    public int writeTo(WritableByteChannel channel) throws IOException {
+        if(channel instanceof GatheringByteChannel) {
+            return (int) writeTo((GatheringByteChannel) channel, this);
+        }
+        int total = 0;
+        for (ByteBuffer buffer : asByteBuffers()) {
+            while(buffer.hasRemaining()) {
+                int written = channel.write(buffer);
+                if(written <= 0) {
+                    readCursor += total;
+                    return total;
+                }
+                total += written;
+            }
+        }
+        readCursor += total;
+        return total;
+    }
+
+    /**
+     * Writes the readable bytes of all the given byte arrays to the given channel, with as few calls to
+     * {@link GatheringByteChannel#write(ByteBuffer[])} as possible (a single one for blocking channels). The read index
+     * of each array is moved past its bytes actually written.<br/>
+     * Stops early if the channel is non-blocking and cannot accept more bytes.
+     * @param channel
+     *          The channel to write to
+     * @param arrays
+     *          The byte arrays to write, in order
+     * @return
+     *          The number of bytes written
+     * @throws IOException
+     *          If the channel throws an IOException
+     */
+    public static long writeTo(GatheringByteChannel channel, AbstractByteArray... arrays) throws IOException {
+        List<ByteBuffer> buffers = new ArrayList<>(arrays.length);
+        int[] ends = new int[arrays.length];
+        long remaining = 0L;
+        for (int i = 0; i < arrays.length; i++) {
+            AbstractByteArray array = arrays[i];
+            int readable = array.writeCursor - array.readCursor;
+            array.collectBuffers(array.readCursor, readable, buffers);
+            ends[i] = buffers.size();
+            remaining += readable;
+        }
+        ByteBuffer[] bufferArray = buffers.toArray(new ByteBuffer[buffers.size()]);
+        long total = 0L;
+        int first = 0;
+        while(total < remaining) {
+            long written = channel.write(bufferArray, first, bufferArray.length - first);
+            if(written <= 0)
+                break;
+            total += written;
+            while(first < bufferArray.length && !bufferArray[first].hasRemaining())
+                first++;
+        }
+        int start = 0;
+        for (int i = 0; i < arrays.length; i++) {
+            int consumed = 0;
+            for (int j = start; j < ends[i]; j++) {
+                consumed += bufferArray[j].position();
+            }
+            arrays[i].readCursor += consumed;
+            start = ends[i];
+        }
+        return total;
+    }
+
+    /**
+     * Reads at most <code>max</code> bytes from the given channel, directly into the storage of this byte array at the
+     * write index, with a single call to the channel. Moves the write index past the bytes read.
+     * @param channel
+     *          The channel to read from
+     * @param max
+     *          The maximum number of bytes to read
+     * @return
+     *          The number of bytes read, possibly 0, or -1 if the channel has reached end-of-stream
+     * @throws IOException
+     *          If the channel throws an IOException
+     */
+    public int readFrom(ReadableByteChannel channel, int max) throws IOException {
+        if(max < 0)
+            throw new IllegalArgumentException("Cannot read a negative number of bytes: "+max);
+        if(isReadOnly())
+            throw new ReadOnlyBufferException();
+        ensureWritable(max);
+        List<ByteBuffer> targets = new ArrayList<>(1);
+        collectBuffers(writeCursor, max, targets);
+        if(targets.isEmpty())
+            return 0;
+        int read;
+        if(targets.size() > 1 && channel instanceof ScatteringByteChannel) {
+            read = (int) ((ScatteringByteChannel) channel).read(targets.toArray(new ByteBuffer[targets.size()]));
+        } else {
+            read = channel.read(targets.get(0));
+        }
+        if(read > 0) {
+            reserve(writeCursor, read);
+            writeCursor += read;
+        }
+        return read;
+    }
+
+    /**
+     * Creates a view over <code>length</code> bytes of this byte array, starting at <code>offset</code>.<br/>
+     * The view shares the storage of this byte array, so modifications made through one are visible through the
+     * other, but has its own indexes and byte order. Its read index starts at 0 and its write index at
+     * <code>length</code>. A slice cannot grow past its length.
+     * @param offset
+     *          The index of the first byte of the slice
+     * @param length
+     *          The number of bytes of the slice
+     * @return
+     *          A new view over this byte array
+     */
+    public AbstractByteArray slice(int offset, int length) {
+        checkReadable(offset, length);
+        return new ByteArrayView(this, offset, length, isReadOnly());
+    }
+
+    /**
+     * Creates a view over the whole byte array.<br/>
+     * The view shares the storage of this byte array, so modifications made through one are visible through the
+     * other, but has its own indexes and byte order, initialized to the ones of this byte array. Writing past the end
+     * of the view grows this byte array.
+     * @return
+     *          A new view over this byte array
+     */
+    public AbstractByteArray duplicate() {
+        return new ByteArrayView(this, 0, -1, isReadOnly());
+    }
+
+    /**
+     * Creates a read-only view over the whole byte array.<br/>
+     * The view has its own indexes and byte order, initialized to the ones of this byte array, and sees the
+     * modifications made to this byte array. Any attempt to write through it throws a
+     * {@link ReadOnlyBufferException}.
+     * @return
+     *          A new read-only view over this byte array
+     */
+    public AbstractByteArray asReadOnly() {
+        return new ByteArrayView(this, 0, -1, true);
+    }
+
+    /**
+     * Returns an {@link InputStream} reading the bytes between the read index and the write index, without copying
+     * them. Reading from the stream moves the read index of this byte array, and
+     * {@link InputStream#mark(int)}/{@link InputStream#reset()} only save and restore it.
+     * @return
+     *          A stream over the readable bytes
+     */
+    public InputStream asInputStream() {
+        return new ArrayInputStream(this);
+    }
+
+    /**
+     * Returns an {@link OutputStream} writing at the write index of this byte array, growing it when needed
+     * @return
+     *          A stream writing into this byte array
+     */
+    public OutputStream asOutputStream() {
+        return new ArrayOutputStream(this);
+    }
+
+    /**
+     * Returns whether writing to this byte array is forbidden
+     * @return
+     *          <code>true</code> if this byte array is a read-only view
+     */
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    /**
+     * Returns the current ByteOrder.
+     * @return
+     *      The current ByteOrder
+     */
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+    /**
+     * Changes the current ByteOrder.<br/>
+     * Note that changing it after writing a word (eg a long, an int, or an unsigned int) does not change the encoding of said word.<br/>
+     * {@link ByteOrder#BIG_ENDIAN} writes the most significant byte first, and {@link ByteOrder#LITTLE_ENDIAN} the
+     * least significant byte first. Data written by older versions, which swapped the two, reads back with the other
+     * order.
+     * @param order
+     *        The new ByteOrder
+     */
+    public void setByteOrder(ByteOrder order) {
+        this.byteOrder = order;
+    }
+
+    /**
+     * Sets the byte at the current write index and grows the storage if <code>writeIndex+1 > capacity()</code><br/>
+     * Increments the write index by 1.
+     * @param b
+     *          The byte to set
+     */
+    public void put(byte b) {
+        growIfNecessary(1);
+        setByte(writeCursor++, b);
+    }
+
+    /**
+     * Write a single signed short into the byte array, respecting the current byte order.<br/>
+     * Increments the write index by 2.
+     * @param s
+     *          The short to write
+     */
+    public void putShort(short s) {
+        growIfNecessary(2);
+        writeWord(writeCursor, s, 2);
+        writeCursor += 2;
+    }
+
+    /**
+     * Write a single signed integer into the byte array, respecting the current byte order.<br/>
+     * Increments the write index by 4.
+     * @param i
+     *          The integer to write
+     */
+    public void putInt(int i) {
+        growIfNecessary(4);
+        writeWord(writeCursor, i, 4);
+        writeCursor += 4;
+    }
+
+    /**
+     * Write a single signed long into the byte array, respecting the current byte order.<br/>
+     * Increments the write index by 8.
+     * @param l
+     *          The long to write
+     */
+    public void putLong(long l) {
+        growIfNecessary(8);
+        writeWord(writeCursor, l, 8);
+        writeCursor += 8;
+    }
+
+    /**
+     * Write a single unsigned integer into the byte array, respecting the current byte order.<br/>
+     * Increments the write index by 4.
+     * @param i
+     *          The unsigned integer to write
+     */
+    public void putUnsignedInt(long i) {
+        growIfNecessary(4);
+        writeWord(writeCursor, i, 4);
+        writeCursor += 4;
+    }
+
+    /**
+     * Write a single float into the byte array, respecting the current byte order.<br/>
+     * Increments the write index by 4.
+     * @param f
+     *          The float to write
+     */
+    public void putFloat(float f) {
+        putInt(Float.floatToRawIntBits(f));
+    }
+
+    /**
+     * Write a single double into the byte array, respecting the current byte order.<br/>
+     * Increments the write index by 8.
+     * @param d
+     *          The double to write
+     */
+    public void putDouble(double d) {
+        putLong(Double.doubleToRawLongBits(d));
+    }
+
+    /**
+     * Writes the content of the given array inside the byte array.<br/>
+     * Increments the write index by <code>bytes.length</code>
+     * @param bytes
+     *          The bytes to write
+     */
+    public void putArray(byte[] bytes) {
+        putArray(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes the bytes of the given byte array between its read index and its write index inside this byte array.<br/>
+     * Increments the write index of this byte array by the number of bytes written, and moves the read index of
+     * <code>array</code> to its write index.
+     * @param array
+     *          The byte array to read from
+     */
+    public void putArray(AbstractByteArray array) {
+        int count = array.getWriteCursor() - array.getReadCursor();
+        growIfNecessary(count);
+        array.copyTo(array.getReadCursor(), this, writeCursor, count);
+        writeCursor += count;
+        array.readCursor = array.getWriteCursor();
+    }
+
+    /**
+     * Writes <code>length</code> bytes of the given array, starting at <code>offset</code>, inside the byte array.<br/>
+     * Increments the write index by <code>length</code>
+     * @param data
+     *          The bytes to write
+     * @param offset
+     *          The index of the first byte to write in <code>data</code>
+     * @param length
+     *          The number of bytes to write
+     */
+    public void putArray(byte[] data, int offset, int length) {
+        if(offset < 0 || length < 0 || offset + length > data.length)
+            throw new IndexOutOfBoundsException("Size: "+data.length+", offset: "+offset+", length: "+length);
+        growIfNecessary(length);
+        writeBytes(writeCursor, data, offset, length);
+        writeCursor += length;
+    }
+
+    /**
+     * Sets the byte at the given index
+     * @param b
+     *          The byte to set
+     * @param index
+     *          The index
+     */
+    public void put(byte b, int index) {
+        reserve(index, 1);
+        setByte(index, b);
+    }
+
+    /**
+     * Write a single signed short into the byte array at the given index, respecting the current byte order.<br/>
+     * @param s
+     *          The short to write
+     * @param index
+     *          The index
+     */
+    public void putShort(short s, int index) {
+        reserve(index, 2);
+        writeWord(index, s, 2);
+    }
+
+    /**
+     * Write a single signed integer into the byte array at the given index, respecting the current byte order.<br/>
+     * @param i
+     *          The integer to write
+     * @param index
+     *          The index
+     */
+    public void putInt(int i, int index) {
+        reserve(index, 4);
+        writeWord(index, i, 4);
+    }
+
+    /**
+     * Write a single signed long into the byte array at the given index, respecting the current byte order.<br/>
+     * @param l
+     *          The long to write
+     * @param index
+     *          The index
+     */
+    public void putLong(long l, int index) {
+        reserve(index, 8);
+        writeWord(index, l, 8);
+    }
+
+    /**
+     * Write a single unsigned integer into the byte array at the given index, respecting the current byte order.<br/>
+     * @param i
+     *          The unsigned integer to write
+     * @param index
+     *          The index
+     */
+    public void putUnsignedInt(long i, int index) {
+        reserve(index, 4);
+        writeWord(index, i, 4);
+    }
+
+    /**
+     * Write a single float into the byte array at the given index, respecting the current byte order.<br/>
+     * @param f
+     *          The float to write
+     * @param index
+     *          The index
+     */
+    public void putFloat(float f, int index) {
+        reserve(index, 4);
+        writeWord(index, Float.floatToRawIntBits(f), 4);
+    }
+
+    /**
+     * Write a single double into the byte array at the given index, respecting the current byte order.<br/>
+     * @param d
+     *          The double to write
+     * @param index
+     *          The index
+     */
+    public void putDouble(double d, int index) {
+        reserve(index, 8);
+        writeWord(index, Double.doubleToRawLongBits(d), 8);
+    }
+
+    /**
+     * Writes the content of the given array inside the byte array at the given index.<br/>
+     * @param bytes
+     *          The bytes to write
+     * @param index
+     *          The index
+     */
+    public void putArray(byte[] bytes, int index) {
+        reserve(index, bytes.length);
+        writeBytes(index, bytes, 0, bytes.length);
+    }
+
+    /**
+     * Returns the byte to the current read index
+     * @return
+     *      The byte at the read index
+     */
+    public byte get() {
+        if(readCursor >= length() || readCursor < 0)
+            throw new IndexOutOfBoundsException("Size: "+length()+", index: "+readCursor);
+        return getByte(readCursor++);
+    }
+
+    /**
+     * Fills the given array with the bytes starting at the current read index.<br/>
+     * Increments the read index by <code>dst.length</code>
+     * @param dst
+     *          The array to fill
+     */
+    public void getArray(byte[] dst) {
+        getArray(dst, 0, dst.length);
+    }
+
+    /**
+     * Copies <code>length</code> bytes starting at the current read index into the given array.<br/>
+     * Increments the read index by <code>length</code>
+     * @param dst
+     *          The array to copy to
+     * @param offset
+     *          The index in <code>dst</code> of the first byte to copy
+     * @param length
+     *          The number of bytes to copy
+     */
+    public void getArray(byte[] dst, int offset, int length) {
+        if(offset < 0 || length < 0 || offset + length > dst.length)
+            throw new IndexOutOfBoundsException("Size: "+dst.length+", offset: "+offset+", length: "+length);
+        checkReadable(readCursor, length);
+        readBytes(readCursor, dst, offset, length);
+        readCursor += length;
+    }
+
+    /**
+     * Reads a single signed short at the current read index, respecting the current byte order.<br/>
+     * Increments the read index by 2.
+     * @return
+     *      The short at the read index
+     */
+    public short getShort() {
+        short result = getShort(readCursor);
+        readCursor += 2;
+        return result;
+    }
+
+    /**
+     * Reads a single signed integer at the current read index, respecting the current byte order.<br/>
+     * Increments the read index by 4.
+     * @return
+     *      The integer at the read index
+     */
+    public int getInt() {
+        int result = getInt(readCursor);
+        readCursor += 4;
+        return result;
+    }
+
+    /**
+     * Reads a single unsigned integer at the current read index, respecting the current byte order.<br/>
+     * Increments the read index by 4.
+     * @return
+     *      The unsigned integer at the read index
+     */
+    public long getUnsignedInt() {
+        long result = getUnsignedInt(readCursor);
+        readCursor += 4;
+        return result;
+    }
+
+    /**
+     * Reads a single signed long at the current read index, respecting the current byte order.<br/>
+     * Increments the read index by 8.
+     * @return
+     *      The long at the read index
+     */
+    public long getLong() {
+        long result = getLong(readCursor);
+        readCursor += 8;
+        return result;
+    }
+
+    /**
+     * Reads a single float at the current read index, respecting the current byte order.<br/>
+     * Increments the read index by 4.
+     * @return
+     *      The float at the read index
+     */
+    public float getFloat() {
+        return Float.intBitsToFloat(getInt());
+    }
+
+    /**
+     * Reads a single double at the current read index, respecting the current byte order.<br/>
+     * Increments the read index by 8.
+     * @return
+     *      The double at the read index
+     */
+    public double getDouble() {
+        return Double.longBitsToDouble(getLong());
+    }
+
+    /**
+     * Returns the byte at the given index
+     * @param index
+     *          The index
+     * @return
+     *      The byte at the given index
+     */
+    public byte get(int index) {
+        if(index >= length() || index < 0)
+            throw new IndexOutOfBoundsException("Size: "+length()+", index: "+index);
+        return getByte(index);
+    }
+
+    /**
+     * Reads a single signed short at the given index, respecting the current byte order.
+     * @param index
+     *          The index
+     * @return
+     *      The short at the given index
+     */
+    public short getShort(int index) {
+        checkReadable(index, 2);
+        return (short) readWord(index, 2);
+    }
+
+    /**
+     * Reads a single signed integer at the given index, respecting the current byte order.
+     * @param index
+     *          The index
+     * @return
+     *      The integer at the given index
+     */
+    public int getInt(int index) {
+        checkReadable(index, 4);
+        return (int) readWord(index, 4);
+    }
+
+    /**
+     * Reads a single unsigned integer at the given index, respecting the current byte order.
+     * @param index
+     *          The index
+     * @return
+     *      The unsigned integer at the given index
+     */
+    public long getUnsignedInt(int index) {
+        checkReadable(index, 4);
+        return readWord(index, 4);
+    }
+
+    /**
+     * Reads a single signed long at the given index, respecting the current byte order.
+     * @param index
+     *          The index
+     * @return
+     *      The long at the given index
+     */
+    public long getLong(int index) {
+        checkReadable(index, 8);
+        return readWord(index, 8);
+    }
+
+    /**
+     * Reads a single float at the given index, respecting the current byte order.
+     * @param index
+     *          The index
+     * @return
+     *      The float at the given index
+     */
+    public float getFloat(int index) {
+        return Float.intBitsToFloat(getInt(index));
+    }
+
+    /**
+     * Reads a single double at the given index, respecting the current byte order.
+     * @param index
+     *          The index
+     * @return
+     *      The double at the given index
+     */
+    public double getDouble(int index) {
+        return Double.longBitsToDouble(getLong(index));
+    }
+
+    /**
+     * Throws an {@link IndexOutOfBoundsException} if <code>count</code> bytes cannot be read at the given index
+     * @param index
+     *          The index of the first byte about to be read
+     * @param count
+     *          The number of bytes about to be read
+     */
+    void checkReadable(int index, int count) {
+        if(index < 0 || count < 0 || index + count > length() || index + count < 0)
+            throw new IndexOutOfBoundsException("Size: "+length()+", index: "+index+", count: "+count);
+    }
+
+    /**
+     * Makes sure <code>count</code> bytes can be written at the write index
+     * @param count
+     *          The number of bytes about to be written
+     */
+    void growIfNecessary(int count) {
+        reserve(writeCursor, count);
+    }
+
+    /**
+     * Makes sure <code>count</code> bytes can be written at the given index, growing the storage if needed, and
+     * extends the logical size to cover them
+     * @param index
+     *          The index of the first byte about to be written
+     * @param count
+     *          The number of bytes about to be written
+     */
+    void reserve(int index, int count) {
+        int end = index + count;
+        if(index < 0 || end < 0)
+            throw new IndexOutOfBoundsException("Size: "+length()+", index: "+index+", count: "+count);
+        if(end > capacity())
+            grow(end);
+        if(end > size)
+            size = end;
+    }
+
+    /**
+     * Reallocates the storage so that it can hold at least <code>minCapacity</code> bytes, following the growth
+     * policy of this byte array
+     * @param minCapacity
+     *          The minimal capacity required
+     */
+    private void grow(int minCapacity) {
+        if(minCapacity > maxCapacity)
+            throw new IllegalStateException("Cannot grow "+getClass().getSimpleName()+" to "+minCapacity+" bytes, maximum capacity is "+maxCapacity);
+        long newCapacity = (long) (capacity() * (double) growthFactor) + MINIMUM_GROWTH;
+        if(newCapacity > maxCapacity)
+            newCapacity = maxCapacity;
+        if(newCapacity < minCapacity)
+            newCapacity = minCapacity;
+        reallocate((int) newCapacity);
+    }
+
+    /**
+     * Makes sure the storage can hold at least <code>minCapacity</code> bytes without having to grow again.
+     * Does not change the length of this byte array.
+     * @param minCapacity
+     *          The minimal capacity required
+     */
+    public void ensureCapacity(int minCapacity) {
+        if(minCapacity > capacity())
+            grow(minCapacity);
+    }
+
+    /**
+     * Makes sure <code>count</code> bytes can be written at the write index without growing the storage again
+     * @param count
+     *          The number of bytes about to be written
+     */
+    void ensureWritable(int count) {
+        ensureCapacity(writeCursor + count);
+    }
+
+    /**
+     * Shrinks the storage so that its capacity matches the current length.
+     */
+    public void trimToSize() {
+        if(capacity() > size)
+            reallocate(size);
+    }
+
+    /**
+     * Returns the number of bytes between the read index and the write index
+     * @return
+     *          The number of bytes that can be read
+     */
+    public int readableBytes() {
+        return writeCursor - readCursor;
+    }
+
+    /**
+     * Returns the number of bytes that can be written at the write index before the storage has to grow
+     * @return
+     *          The number of bytes that can be written without growing
+     */
+    public int writableBytes() {
+        return capacity() - writeCursor;
+    }
+
+    /**
+     * Discards the bytes before the read index: the bytes from the read index to the end are moved to the start of
+     * the storage, and both indexes are moved back accordingly. The read index is 0 afterwards.<br/>
+     * Calling this method from time to time when using a byte array as a producer/consumer buffer keeps it from
+     * growing forever. See {@link RingByteArray} for a buffer which never needs it.
+     */
+    public void compact() {
+        if(isReadOnly())
+            throw new ReadOnlyBufferException();
+        int discarded = readCursor;
+        if(discarded <= 0)
+            return;
+        int remaining = length() - discarded;
+        if(remaining > 0) {
+            // the destination is before the source, so copying front to back never overwrites bytes not copied yet
+            copyTo(discarded, this, 0, remaining);
+        }
+        readCursor = 0;
+        writeCursor -= discarded;
+        size = Math.max(remaining, 0);
+    }
+
+    /**
+     * Returns the current length of this byte array, that is the index following the highest byte written
+     * @return
+     *          The current length
+     */
+    public int length() {
+        return size;
+    }
+
+    /**
+     * Returns the factor applied to the capacity when the storage needs to grow
+     * @return
+     *          The growth factor
+     */
+    public float getGrowthFactor() {
+        return growthFactor;
+    }
+
+    /**
+     * Changes the factor applied to the capacity when the storage needs to grow. Defaults to {@link #DEFAULT_GROWTH_FACTOR}
+     * @param growthFactor
+     *          The new growth factor, at least 1
+     */
+    public void setGrowthFactor(float growthFactor) {
+        if(!(growthFactor >= 1f))
+            throw new IllegalArgumentException("Growth factor must be at least 1, got "+growthFactor);
+        this.growthFactor = growthFactor;
+    }
+
+    /**
+     * Returns the capacity this byte array cannot grow past
+     * @return
+     *          The maximum capacity
+     */
+    public int getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    /**
+     * Changes the capacity this byte array cannot grow past. Defaults to {@link #DEFAULT_MAX_CAPACITY}
+     * @param maxCapacity
+     *          The new maximum capacity, cannot be lower than the current capacity
+     */
+    public void setMaxCapacity(int maxCapacity) {
+        if(maxCapacity < capacity())
+            throw new IllegalArgumentException("Maximum capacity ("+maxCapacity+") cannot be lower than the current capacity ("+capacity()+")");
+        this.maxCapacity = maxCapacity;
+    }
+
+    /**
+     * Returns the value of the read index
+     * @return
+     *          The value of the read index
+     */
+    public int getReadCursor() {
+        return readCursor;
+    }
+
+    /**
+     * Set the value of the read index
+     * @param readCursor
+     *          The value of the read index
+     */
+    public void setReadCursor(int readCursor) {
+        this.readCursor = readCursor;
+    }
+
+    /**
+     * Returns the value of the write index
+     * @return
+     *          The value of the write index
+     */
+    public int getWriteCursor() {
+        return writeCursor;
+    }
+
+    /**
+     * Set the value of the write index
+     * @param writeCursor
+     *          The value of the write index
+     */
+    public void setWriteCursor(int writeCursor) {
+        this.writeCursor = writeCursor;
+    }
+
+    /**
+     * Reset read and write indexes to 0
+     */
+    public void reset() {
+        readCursor = 0;
+        writeCursor = 0;
+    }
+
+    /**
+     * Writes the given characters encoded in UTF-8, followed by 1 to 4 null bytes so that the write index ends up
+     * aligned on 4 bytes.
+     * @param chars
+     *          The characters to write
+     */
+    public void putChars(String chars) {
+        putUTF8(chars);
+        int count = 4-(writeCursor%4);
+        growIfNecessary(count);
+        for(int i = 0; i < count; i++) {
+            setByte(writeCursor++, (byte) 0);
+        }
+    }
+
+    /**
+     * Returns the number of bytes needed to encode the given characters in UTF-8. Unpaired surrogates count as one
+     * byte, as they are replaced by <code>'?'</code>
+     * @param chars
+     *          The characters
+     * @return
+     *          The length of their UTF-8 encoding
+     */
+    public static int utf8Length(CharSequence chars) {
+        int length = chars.length();
+        int result = length;
+        for (int i = 0; i < length; i++) {
+            char c = chars.charAt(i);
+            if(c < 0x80) {
+                continue;
+            }
+            if(c < 0x800) {
+                result++;
+            } else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                // 4 bytes for 2 chars
+                result += 2;
+                i++;
+            } else if(Character.isSurrogate(c)) {
+                // replaced by '?'
+            } else {
+                result += 2;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Encodes the given characters in UTF-8 directly into the storage. Unpaired surrogates are replaced by
+     * <code>'?'</code>
+     * @param index
+     *          The index of the first byte to write, the storage must already be large enough
+     * @param chars
+     *          The characters to encode
+     * @param start
+     *          The index of the first character to encode
+     */
+    protected void encodeUTF8(int index, CharSequence chars, int start) {
+        int length = chars.length();
+        for (int i = start; i < length; i++) {
+            char c = chars.charAt(i);
+            if(c < 0x80) {
+                setByte(index++, (byte) c);
+            } else if(c < 0x800) {
+                setByte(index++, (byte) (0xC0 | (c >> 6)));
+                setByte(index++, (byte) (0x80 | (c & 0x3F)));
+            } else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+                setByte(index++, (byte) (0xF0 | (codePoint >> 18)));
+                setByte(index++, (byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                setByte(index++, (byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                setByte(index++, (byte) (0x80 | (codePoint & 0x3F)));
+            } else if(Character.isSurrogate(c)) {
+                setByte(index++, (byte) '?');
+            } else {
+                setByte(index++, (byte) (0xE0 | (c >> 12)));
+                setByte(index++, (byte) (0x80 | ((c >> 6) & 0x3F)));
+                setByte(index++, (byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Decodes UTF-8 bytes from the storage, appending the characters to the given builder. Malformed sequences are
+     * replaced by <code>'\uFFFD'</code>
+     * @param index
+     *          The index of the first byte to decode
+     * @param length
+     *          The number of bytes to decode
+     * @param destination
+     *          The builder to append the characters to
+     */
+    protected void decodeUTF8(int index, int length, StringBuilder destination) {
+        int end = index + length;
+        while(index < end) {
+            int b = getByte(index++);
+            if(b >= 0) {
+                destination.append((char) b);
+                continue;
+            }
+            int extra;
+            int codePoint;
+            if((b & 0xE0) == 0xC0) {
+                extra = 1;
+                codePoint = b & 0x1F;
+            } else if((b & 0xF0) == 0xE0) {
+                extra = 2;
+                codePoint = b & 0x0F;
+            } else if((b & 0xF8) == 0xF0) {
+                extra = 3;
+                codePoint = b & 0x07;
+            } else {
+                destination.append('\uFFFD');
+                continue;
+            }
+            int i = 0;
+            for (; i < extra && index < end; i++) {
+                int next = getByte(index);
+                if((next & 0xC0) != 0x80)
+                    break;
+                codePoint = (codePoint << 6) | (next & 0x3F);
+                index++;
+            }
+            if(i < extra || !Character.isValidCodePoint(codePoint)) {
+                destination.append('\uFFFD');
+            } else {
+                destination.appendCodePoint(codePoint);
+            }
+        }
+    }
+
+    /**
+     * Writes the given characters encoded in UTF-8, without any length nor terminator.<br/>
+     * Increments the write index by the number of bytes written.
+     * @param chars
+     *          The characters to write
+     * @return
+     *          The number of bytes written
+     */
+    public int putUTF8(CharSequence chars) {
+        int length = utf8Length(chars);
+        growIfNecessary(length);
+        encodeUTF8(writeCursor, chars, 0);
+        writeCursor += length;
+        return length;
+    }
+
+    /**
+     * Decodes <code>length</code> bytes of UTF-8 starting at the read index.<br/>
+     * Increments the read index by <code>length</code>.
+     * @param length
+     *          The number of bytes to decode
+     * @return
+     *          The decoded characters
+     */
+    public String getUTF8(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        getUTF8(length, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Decodes <code>length</code> bytes of UTF-8 starting at the read index, appending the characters to the given
+     * builder.<br/>
+     * Increments the read index by <code>length</code>.
+     * @param length
+     *          The number of bytes to decode
+     * @param destination
+     *          The builder to append the characters to
+     */
+    public void getUTF8(int length, StringBuilder destination) {
+        checkReadable(readCursor, length);
+        decodeUTF8(readCursor, length, destination);
+        readCursor += length;
+    }
+
+    /**
+     * Writes the given characters as their UTF-8 length (as an unsigned varint, see {@link #putVarInt(int)}) followed
+     * by their UTF-8 encoding.<br/>
+     * Increments the write index by the number of bytes written.
+     * @param chars
+     *          The characters to write
+     */
+    public void putString(CharSequence chars) {
+        putVarInt(utf8Length(chars));
+        putUTF8(chars);
+    }
+
+    /**
+     * Reads characters written by {@link #putString(CharSequence)} at the read index.<br/>
+     * Increments the read index by the number of bytes read.
+     * @return
+     *          The decoded characters
+     */
+    public String getString() {
+        return getUTF8(getVarInt());
+    }
+
+    /**
+     * Writes an int as an unsigned LEB128 varint: 7 bits per byte, least significant group first, the highest bit of each
+     * byte telling whether another byte follows. Small positive values take a single byte, negative values always
+     * take 5 bytes (see {@link #putSignedVarInt(int)} for these).<br/>
+     * Increments the write index by the number of bytes written (1 to 5).
+     * @param value
+     *          The value to write
+     */
+    public void putVarInt(int value) {
+        putVarLong(value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Writes a long as an unsigned LEB128 varint (see {@link #putVarInt(int)}).<br/>
+     * Increments the write index by the number of bytes written (1 to 10).
+     * @param value
+     *          The value to write
+     */
+    public void putVarLong(long value) {
+        int length = varLongLength(value);
+        growIfNecessary(length);
+        int index = writeCursor;
+        while((value & ~0x7FL) != 0L) {
+            setByte(index++, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        setByte(index, (byte) value);
+        writeCursor += length;
+    }
+
+    /**
+     * Writes an int as a zig-zag encoded varint, so that values close to 0, positive or negative, take few bytes.<br/>
+     * Increments the write index by the number of bytes written (1 to 5).
+     * @param value
+     *          The value to write
+     */
+    public void putSignedVarInt(int value) {
+        putVarInt((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Writes a long as a zig-zag encoded varint, so that values close to 0, positive or negative, take few bytes.<br/>
+     * Increments the write index by the number of bytes written (1 to 10).
+     * @param value
+     *          The value to write
+     */
+    public void putSignedVarLong(long value) {
+        putVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint written by {@link #putVarInt(int)} at the read index.<br/>
+     * Increments the read index by the number of bytes read.
+     * @return
+     *          The value read
+     */
+    public int getVarInt() {
+        long value = getVarLong();
+        if((value >>> 32) != 0L)
+            throw new IllegalStateException("Varint does not fit in an int: "+value);
+        return (int) value;
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint written by {@link #putVarLong(long)} at the read index.<br/>
+     * Increments the read index by the number of bytes read.
+     * @return
+     *          The value read
+     */
+    public long getVarLong() {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = get();
+            // only the lowest bit of the 10th byte fits in a long
+            if(shift == 63 && (b & 0x7E) != 0)
+                throw new IllegalStateException("Malformed varint, does not fit in a long");
+            value |= (long) (b & 0x7F) << shift;
+            if(b >= 0)
+                return value;
+        }
+        throw new IllegalStateException("Malformed varint, longer than 10 bytes");
+    }
+
+    /**
+     * Reads a zig-zag encoded varint written by {@link #putSignedVarInt(int)} at the read index.<br/>
+     * Increments the read index by the number of bytes read.
+     * @return
+     *          The value read
+     */
+    public int getSignedVarInt() {
+        int value = getVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a zig-zag encoded varint written by {@link #putSignedVarLong(long)} at the read index.<br/>
+     * Increments the read index by the number of bytes read.
+     * @return
+     *          The value read
+     */
+    public long getSignedVarLong() {
+        long value = getVarLong();
+        return (value >>> 1) ^ -(value & 1L);
+    }
+
+    private static int varLongLength(long value) {
+        // 1 byte per group of 7 significant bits, at least 1
+        return Math.max(1, (64 - Long.numberOfLeadingZeros(value) + 6) / 7);
+    }
+
+    /**
+     * Returns the index of the first occurrence of a byte between the read index and the write index
+     * @param value
+     *          The byte to find
+     * @return
+     *          The index of the first occurrence, or -1 if there is none
+     */
+    public int indexOf(byte value) {
+        return indexOf(value, readCursor, writeCursor);
+    }
+
+    /**
+     * Returns the index of the first occurrence of a byte between two indexes. Reads 8 bytes at a time.
+     * @param value
+     *          The byte to find
+     * @param from
+     *          The index to start from, inclusive
+     * @param to
+     *          The index to stop at, exclusive
+     * @return
+     *          The index of the first occurrence, or -1 if there is none
+     */
+    public int indexOf(byte value, int from, int to) {
+        checkReadable(from, to - from);
+        ByteBuffer storage = storageBuffer();
+        if(storage != null)
+            return ByteSearch.indexOf(storage, from, to, value);
+        List<ByteBuffer> parts = new ArrayList<>(2);
+        collectBuffers(from, to - from, parts);
+        int start = from;
+        for (ByteBuffer part : parts) {
+            int found = ByteSearch.indexOf(part, part.position(), part.limit(), value);
+            if(found >= 0)
+                return start + found - part.position();
+            start += part.remaining();
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first occurrence of a sequence of bytes between the read index and the write index
+     * @param pattern
+     *          The bytes to find
+     * @return
+     *          The index of the first byte of the first occurrence, or -1 if there is none
+     */
+    public int indexOf(byte[] pattern) {
+        return indexOf(pattern, readCursor, writeCursor);
+    }
+
+    /**
+     * Returns the index of the first occurrence of a sequence of bytes between two indexes.<br/>
+     * Looks for the first byte of the pattern 8 bytes at a time, then compares the rest of it 8 bytes at a time.
+     * @param pattern
+     *          The bytes to find
+     * @param from
+     *          The index to start from, inclusive
+     * @param to
+     *          The index to stop at, exclusive. The whole occurrence must be before it
+     * @return
+     *          The index of the first byte of the first occurrence, or -1 if there is none
+     */
+    public int indexOf(byte[] pattern, int from, int to) {
+        checkReadable(from, to - from);
+        if(pattern.length == 0)
+            return from;
+        ByteBuffer wrapped = ByteBuffer.wrap(pattern);
+        int last = to - pattern.length;
+        for (int index = from; index <= last; index++) {
+            index = indexOf(pattern[0], index, last + 1);
+            if(index < 0)
+                return -1;
+            if(mismatch(index + 1, wrapped, 1, pattern.length - 1) < 0)
+                return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Compares bytes of the storage with bytes of a buffer
+     * @return
+     *          The index of the first different byte, relative to the start of the ranges, or -1 if they are equal
+     */
+    private int mismatch(int index, ByteBuffer other, int otherIndex, int length) {
+        ByteBuffer storage = storageBuffer();
+        if(storage != null)
+            return ByteSearch.mismatch(storage, index, other, otherIndex, length);
+        for (int i = 0; i < length; i++) {
+            if(getByte(index + i) != other.get(otherIndex + i))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first byte that differs between two ranges of the same length. Reads 8 bytes at a time when the
+     * storage of one of the byte arrays is contiguous.
+     * @param a
+     *          The first byte array
+     * @param aIndex
+     *          The index of the first byte of the range in <code>a</code>
+     * @param b
+     *          The second byte array
+     * @param bIndex
+     *          The index of the first byte of the range in <code>b</code>
+     * @param length
+     *          The number of bytes to compare
+     * @return
+     *          The index of the first different byte, relative to the start of the ranges, or -1 if they are equal
+     */
+    public static int mismatch(AbstractByteArray a, int aIndex, AbstractByteArray b, int bIndex, int length) {
+        a.checkReadable(aIndex, length);
+        b.checkReadable(bIndex, length);
+        ByteBuffer storage = b.storageBuffer();
+        if(storage != null)
+            return a.mismatch(aIndex, storage, bIndex, length);
+        storage = a.storageBuffer();
+        if(storage != null)
+            return b.mismatch(bIndex, storage, aIndex, length);
+        for (int i = 0; i < length; i++) {
+            if(a.getByte(aIndex + i) != b.getByte(bIndex + i))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first byte that differs between the readable bytes of this byte array and the readable bytes of
+     * another one, like {@link java.util.Arrays#equals(byte[], byte[])} but returning where they differ
+     * @param other
+     *          The byte array to compare to
+     * @return
+     *          The index of the first different byte, relative to the read indexes, the number of readable bytes of the
+     *          shortest byte array if it is a prefix of the other, or -1 if they hold the same bytes
+     */
+    public int mismatch(AbstractByteArray other) {
+        int length = readableBytes();
+        int otherLength = other.readableBytes();
+        int found = mismatch(this, readCursor, other, other.readCursor, Math.min(length, otherLength));
+        if(found >= 0)
+            return found;
+        return length == otherLength ? -1 : Math.min(length, otherLength);
+    }
+
+    /**
+     * Compares the readable bytes of this byte array and of another one lexicographically, as unsigned values
+     * @param other
+     *          The byte array to compare to
+     * @return
+     *          A negative value, 0 or a positive value if this byte array is respectively lower than, equal to or
+     *          greater than <code>other</code>
+     */
+    @Override
+    public int compareTo(AbstractByteArray other) {
+        int found = mismatch(other);
+        if(found < 0)
+            return 0;
+        if(found == readableBytes() || found == other.readableBytes())
+            return Integer.compare(readableBytes(), other.readableBytes());
+        return Integer.compare(getByte(readCursor + found) & 0xFF, other.getByte(other.readCursor + found) & 0xFF);
+    }
+
+    /**
+     * Tells whether the given object is a byte array holding the same readable bytes (between the read and write
+     * indexes) as this one. The storage, capacity, byte order and the bytes outside of the readable range do not
+     * matter.
+     * @param obj
+     *          The object to compare to
+     * @return
+     *          <code>true</code> if <code>obj</code> holds the same readable bytes
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if(this == obj)
+            return true;
+        if(!(obj instanceof AbstractByteArray))
+            return false;
+        AbstractByteArray other = (AbstractByteArray) obj;
+        return readableBytes() == other.readableBytes() && mismatch(other) < 0;
+    }
+
+    /**
+     * Returns a hash of the readable bytes (between the read and write indexes), computed with {@link XXHash64}.
+     * As it depends on the contents, it changes when the byte array is modified.
+     * @return
+     *          The hash code
+     */
+    @Override
+    public int hashCode() {
+        long hash;
+        ByteBuffer storage = storageBuffer();
+        if(storage != null) {
+            hash = XXHash64.hash(storage, readCursor, readableBytes(), 0L);
+        } else {
+            XXHash64 checksum = new XXHash64();
+            updateChecksum(checksum, readCursor, readableBytes());
+            hash = checksum.getValue();
+        }
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Updates a checksum with the readable bytes (between the read and write indexes). The indexes are not modified.
+     * @param checksum
+     *          The checksum to update, for instance a {@link CRC32C}, a {@link XXHash64} or a {@link java.util.zip.CRC32}
+     */
+    public void updateChecksum(Checksum checksum) {
+        updateChecksum(checksum, readCursor, readableBytes());
+    }
+
+    /**
+     * Updates a checksum with <code>length</code> bytes starting at <code>index</code>, without copying them when the
+     * checksum accepts {@link ByteBuffer}s
+     * @param checksum
+     *          The checksum to update, for instance a {@link CRC32C}, a {@link XXHash64} or a {@link java.util.zip.CRC32}
+     * @param index
+     *          The index of the first byte
+     * @param length
+     *          The number of bytes
+     */
+    public void updateChecksum(Checksum checksum, int index, int length) {
+        checkReadable(index, length);
+        List<ByteBuffer> parts = new ArrayList<>(2);
+        collectBuffers(index, length, parts);
+        for (ByteBuffer part : parts) {
+            if(checksum instanceof CRC32C) {
+                ((CRC32C) checksum).update(part);
+            } else if(checksum instanceof XXHash64) {
+                ((XXHash64) checksum).update(part);
+            } else if(checksum instanceof CRC32) {
+                ((CRC32) checksum).update(part);
+            } else if(checksum instanceof Adler32) {
+                ((Adler32) checksum).update(part);
+            } else if(part.hasArray()) {
+                checksum.update(part.array(), part.arrayOffset() + part.position(), part.remaining());
+            } else {
+                byte[] chunk = new byte[Math.min(part.remaining(), 4096)];
+                while(part.hasRemaining()) {
+                    int count = Math.min(chunk.length, part.remaining());
+                    part.get(chunk, 0, count);
+                    checksum.update(chunk, 0, count);
+                }
+            }
+        }
+    }
+
+    public void putUnsignedInts(long... unsignedInts) {
+        for (long l : unsignedInts)
+            putUnsignedInt(l);
+    }
+
+    public void putUnsignedBool(boolean value) {
+        putUnsignedInt(value ? 1L : 0L);
+    }
+}
@@ -0,0 +1,113 @@
+package org.jglr.flows.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@link InputStream} reading the bytes of a byte array between its read index and its write index, moving its
+ * read index. Created by {@link AbstractByteArray#asInputStream()}.
+ */
+class ArrayInputStream extends InputStream {
+
+    private final AbstractByteArray array;
+    private int mark;
+
+    ArrayInputStream(AbstractByteArray array) {
+        this.array = array;
+        this.mark = array.readCursor;
+    }
+
+    @Override
+    public int read() {
+        if(array.readCursor >= array.writeCursor)
+            return -1;
+        return array.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if(off < 0 || len < 0 || off + len > b.length)
+            throw new IndexOutOfBoundsException("Size: "+b.length+", offset: "+off+", length: "+len);
+        if(len == 0)
+            return 0;
+        int count = Math.min(len, array.readableBytes());
+        if(count <= 0)
+            return -1;
+        array.getArray(b, off, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        int count = (int) Math.max(0, Math.min(n, array.readableBytes()));
+        array.readCursor += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return Math.max(0, array.readableBytes());
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    /**
+     * Remembers the current read index. The limit is ignored: every byte stays available until the byte array is
+     * modified.
+     */
+    @Override
+    public void mark(int readlimit) {
+        mark = array.readCursor;
+    }
+
+    @Override
+    public void reset() {
+        array.readCursor = mark;
+    }
+
+    /**
+     * Writes every remaining byte to the given stream without any intermediate copy when the storage is on the heap,
+     * or directly into the storage of the target when it writes to a byte array
+     * @param out
+     *          The stream to write to
+     * @return
+     *          The number of bytes transferred
+     * @throws IOException
+     *          If <code>out</code> throws an IOException
+     */
+    public long transferTo(OutputStream out) throws IOException {
+        int count = array.readableBytes();
+        if(count <= 0)
+            return 0;
+        if(out instanceof ArrayOutputStream) {
+            ((ArrayOutputStream) out).array.putArray(array);
+            return count;
+        }
+        List<ByteBuffer> parts = new ArrayList<>(2);
+        array.collectBuffers(array.readCursor, count, parts);
+        byte[] chunk = null;
+        for (ByteBuffer part : parts) {
+            if(part.hasArray()) {
+                out.write(part.array(), part.arrayOffset() + part.position(), part.remaining());
+            } else {
+                if(chunk == null) {
+                    chunk = new byte[Math.min(count, 8192)];
+                }
+                while(part.hasRemaining()) {
+                    int length = Math.min(chunk.length, part.remaining());
+                    part.get(chunk, 0, length);
+                    out.write(chunk, 0, length);
+                }
+            }
+        }
+        array.readCursor += count;
+        return count;
+    }
+}
@@ -0,0 +1,28 @@
+package org.jglr.flows.io;
+
+import java.io.OutputStream;
+
+/**
+ * An {@link OutputStream} writing to a byte array at its write index, growing it when needed. Created by
+ * {@link AbstractByteArray#asOutputStream()}.
+ */
+class ArrayOutputStream extends OutputStream {
+
+    final AbstractByteArray array;
+
+    ArrayOutputStream(AbstractByteArray array) {
+        this.array = array;
+    }
+
+    @Override
+    public void write(int b) {
+        array.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if(off < 0 || len < 0 || off + len > b.length)
+            throw new IndexOutOfBoundsException("Size: "+b.length+", offset: "+off+", length: "+len);
+        array.putArray(b, off, len);
+    }
+}
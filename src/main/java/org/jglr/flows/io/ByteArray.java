@@ -1,36 +1,44 @@
 package org.jglr.flows.io;
 
-import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.Checksum;
 
 /**
- * Represents a resizable and growable byte array.
- * Also supports changing the byte order and automatically handle other primitives than <code>byte</code>.
+ * Represents a resizable and growable byte array, stored in a heap <code>byte[]</code>.
+ * Also supports changing the byte order and automatically handle other primitives than <code>byte</code>.<br/>
+ * The capacity of the backing array grows geometrically (see {@link #setGrowthFactor(float)}) so that appending
+ * bytes one by one has an amortized constant cost. The logical size ({@link #length()}) only covers the bytes that
+ * have actually been written.
  */
-public class ByteArray {
+public class ByteArray extends AbstractByteArray {
 
-    private ByteOrder byteOrder;
-    private int writeCursor;
-    private int readCursor;
     private byte[] data;
+    /**
+     * Lazily created buffer over <code>data</code>, to read it one word at a time
+     */
+    private ByteBuffer words;
+
+    /**
+     * Set by {@link ByteArrayPool} while this array is lent out, <code>null</code> otherwise
+     */
+    Object poolLease;
 
     /**
-     * Creates an empty ByteArray instance with a length equal to 0.
+     * Creates an empty ByteArray instance with a capacity equal to 0.
      */
     public ByteArray() {
         this(0);
     }
 
     /**
-     * Creates an empty ByteArray instance with a given length.
+     * Creates an empty ByteArray instance with a given initial capacity.
      * @param length
-     *          The length of the ByteArray
+     *          The initial capacity of the ByteArray
      */
     public ByteArray(int length) {
         data = new byte[length];
-        byteOrder = ByteOrder.nativeOrder();
     }
 
     /**
@@ -42,242 +50,127 @@ public class ByteArray {
      */
     public ByteArray(byte[] array) {
         data = array;
-        byteOrder = ByteOrder.nativeOrder();
-    }
-
-    /**
-     * Returns the current ByteOrder.
-     * @return
-     *      The current ByteOrder
-     */
-    public ByteOrder getByteOrder() {
-        return byteOrder;
+        size = array.length;
     }
 
-    /**
-     * Changes the current ByteOrder.<br/>
-     * Note that changing it after writing a word (eg a long, an int, or an unsigned int) does not change the encoding of said word.
-     * @param order
-     *        The new ByteOrder
-     */
-    public void setByteOrder(ByteOrder order) {
-        this.byteOrder = order;
+    @Override
+    protected byte getByte(int index) {
+        return data[index];
     }
 
-    /**
-     * Sets the byte at the current write index and grows the array if <code>writeIndex+1 >= length()</code><br/>
-     * Increments the write index by 1.
-     * @param b
-     *          The byte to set
-     */
-    public void put(byte b) {
-        growIfNecessary(1);
-        data[writeCursor++] = b;
-    }
-
-    /**
-     * Write a single signed integer into the ByteArray, respecting the current byte order.<br/>
-     * Increments the write index by 4.
-     * @param i
-     *          The integer to write
-     */
-    public void putInt(int i) {
-        putArray(toBytes(i, 4));
+    @Override
+    protected void setByte(int index, byte b) {
+        data[index] = b;
     }
 
-    /**
-     * Write a single signed long into the ByteArray, respecting the current byte order.<br/>
-     * Increments the write index by 8.
-     * @param l
-     *          The long to write
-     */
-    public void putLong(long l) {
-        putArray(toBytes(l, 8));
+    @Override
+    public int capacity() {
+        return data.length;
     }
 
-    /**
-     * Write a single unsigned integer into the ByteArray, respecting the current byte order.<br/>
-     * Increments the write index by 4.
-     * @param i
-     *          The unsigned integer to write
-     */
-    public void putUnsignedInt(long i) {
-        putArray(toBytes(i, 4));
+    @Override
+    protected void reallocate(int newCapacity) {
+        data = Arrays.copyOf(data, newCapacity);
+        words = null;
     }
 
-    /**
-     * Writes the content of the given array inside the ByteArray.<br/>
-     * Increments the write index by <code>bytes.length</code>
-     * @param bytes
-     *          The bytes to write
-     */
-    public void putArray(byte[] bytes) {
-        growIfNecessary(bytes.length);
-        for (byte b : bytes) {
-            put(b);
+    @Override
+    protected void writeWord(int index, long value, int byteCount) {
+        if(byteOrder == ByteOrder.BIG_ENDIAN) {
+            for (int i = 0; i < byteCount; i++) {
+                data[index + i] = (byte) (value >>> (8*(byteCount-i-1)));
+            }
+        } else {
+            for (int i = 0; i < byteCount; i++) {
+                data[index + i] = (byte) (value >>> (8*i));
+            }
         }
     }
 
-    /**
-     * Sets the byte at the given index
-     * @param b
-     *          The byte to set
-     * @param index
-     *          The index
-     */
-    public void put(byte b, int index) {
-        data[index] = b;
-    }
-
-    /**
-     * Write a single signed integer into the ByteArray at the given index, respecting the current byte order.<br/>
-     * @param i
-     *          The integer to write
-     * @param index
-     *          The index
-     */
-    public void putInt(int i, int index) {
-        putArray(toBytes(i, 4), index);
+    @Override
+    protected long readWord(int index, int byteCount) {
+        long value = 0L;
+        if(byteOrder == ByteOrder.BIG_ENDIAN) {
+            for (int i = 0; i < byteCount; i++) {
+                value = (value << 8) | (data[index + i] & 0xFFL);
+            }
+        } else {
+            for (int i = byteCount-1; i >= 0; i--) {
+                value = (value << 8) | (data[index + i] & 0xFFL);
+            }
+        }
+        return value;
     }
 
-    /**
-     * Write a single signed long into the ByteArray at the given index, respecting the current byte order.<br/>
-     * @param l
-     *          The long to write
-     * @param index
-     *          The index
-     */
-    public void putLong(long l, int index) {
-        putArray(toBytes(l, 8), index);
+    @Override
+    protected void writeBytes(int index, byte[] src, int offset, int length) {
+        System.arraycopy(src, offset, data, index, length);
     }
 
-    /**
-     * Write a single unsigned integer into the ByteArray at the given index, respecting the current byte order.<br/>
-     * @param i
-     *          The unsigned integer to write
-     * @param index
-     *          The index
-     */
-    public void putUnsignedInt(long i, int index) {
-        putArray(toBytes(i, 4), index);
+    @Override
+    protected void readBytes(int index, byte[] dst, int offset, int length) {
+        System.arraycopy(data, index, dst, offset, length);
     }
 
-    public void putArray(ByteArray array) {
-        putArray(array.data, array.getReadCursor(), array.getWriteCursor()-array.getReadCursor());
-        array.readCursor = array.getWriteCursor();
+    @Override
+    protected void copyTo(int index, AbstractByteArray dst, int dstIndex, int length) {
+        dst.writeBytes(dstIndex, data, index, length);
     }
 
-    public void putArray(byte[] data, int offset, int length) {
-        for (int i = 0; i < length; i++) {
-            byte b = data[i+offset];
-            put(b);
+    @Override
+    protected void encodeUTF8(int index, CharSequence chars, int start) {
+        int length = chars.length();
+        int i = start;
+        // ASCII fast path
+        for (; i < length; i++) {
+            char c = chars.charAt(i);
+            if(c >= 0x80)
+                break;
+            data[index++] = (byte) c;
         }
-    }
-
-    /**
-     * Writes the content of the given array inside the ByteArray at the given index.<br/>
-     * @param bytes
-     *          The bytes to write
-     * @param index
-     *          The index
-     */
-    public void putArray(byte[] bytes, int index) {
-        for (int i = 0; i < bytes.length; i++) {
-            byte b = bytes[i];
-            put(b, i+index);
+        if(i < length) {
+            super.encodeUTF8(index, chars, i);
         }
     }
 
-    /**
-     * Used to convert an int or a long to a byte array, while respecting the byte order
-     * @param value
-     *          Value to convert
-     * @param byteCount
-     *          The number of bytes used to represent the value
-     * @return
-     *          A byte array containing the bytes converted from the value
-     *
-     * @see #getByteOrder()
-     * @see #setByteOrder(ByteOrder)
-     */
-    private byte[] toBytes(long value, int byteCount) {
-        byte[] bytes = new byte[byteCount];
-        for (int i = 0; i < byteCount; i++) {
-            if(byteOrder == ByteOrder.BIG_ENDIAN) {
-                bytes[i] = (byte) (value >> ((i*8)) & 0xFF);
-            } else {
-                bytes[i] = (byte) (value >> ((8*(byteCount-i-1))) & 0xFF);
-            }
+    @Override
+    protected void decodeUTF8(int index, int length, StringBuilder destination) {
+        int end = index + length;
+        // ASCII fast path
+        for (; index < end; index++) {
+            byte b = data[index];
+            if(b < 0)
+                break;
+            destination.append((char) b);
         }
-        return bytes;
-    }
-
-    /**
-     * Returns the byte to the current read index
-     * @return
-     *      The byte at the read index
-     */
-    public byte get() {
-        if(readCursor >= length() || readCursor < 0)
-            throw new IndexOutOfBoundsException("Size: "+length()+", index: "+readCursor);
-        return data[readCursor++];
-    }
-
-    private void growIfNecessary(int count) {
-        if(writeCursor + count >= length()) {
-            byte[] oldData = data;
-            data = new byte[writeCursor+count];
-            System.arraycopy(oldData, 0, data, 0, oldData.length);
+        if(index < end) {
+            super.decodeUTF8(index, end - index, destination);
         }
     }
 
-    /**
-     * Returns the current length of this ByteArray
-     * @return
-     *          The current length
-     */
-    public int length() {
-        return data.length;
-    }
-
-    /**
-     * Returns the value of the read index
-     * @return
-     *          The value of the read index
-     */
-    public int getReadCursor() {
-        return readCursor;
+    @Override
+    protected ByteBuffer bufferView(int index, int length) {
+        return ByteBuffer.wrap(data, index, length).slice();
     }
 
-    /**
-     * Set the value of the read index
-     * @param readCursor
-     *          The value of the read index
-     */
-    public void setReadCursor(int readCursor) {
-        this.readCursor = readCursor;
-    }
-
-    /**
-     * Returns the value of the write index
-     * @return
-     *          The value of the write index
-     */
-    public int getWriteCursor() {
-        return writeCursor;
+    @Override
+    ByteBuffer storageBuffer() {
+        if(words == null) {
+            words = ByteBuffer.wrap(data).order(ByteOrder.nativeOrder());
+        }
+        return words;
     }
 
-    /**
-     * Set the value of the write index
-     * @param writeCursor
-     *          The value of the write index
-     */
-    public void setWriteCursor(int writeCursor) {
-        this.writeCursor = writeCursor;
+    @Override
+    public void updateChecksum(Checksum checksum, int index, int length) {
+        checkReadable(index, length);
+        checksum.update(data, index, length);
     }
 
     /**
-     * Returns the byte array backing this ByteArray instance
+     * Returns the byte array backing this ByteArray instance.<br/>
+     * The array may be longer than {@link #length()}: bytes after the length are unused capacity. Growing the
+     * ByteArray or calling {@link #trimToSize()} reallocates the backing array.
      * @return
      *        The backing byte array
      */
@@ -296,43 +189,13 @@ public class ByteArray {
         return result;
     }
 
-    /**
-     * Reset read and write indexes to 0
-     */
-    public void reset() {
-        readCursor = 0;
-        writeCursor = 0;
-    }
-
-    public void putChars(String chars) {
-        try {
-            byte[] bytes = chars.getBytes("UTF-8");
-            putArray(bytes);
-            int count = 4-(writeCursor%4);
-            for(int i = 0; i < count; i++) {
-                put((byte) 0);
-            }
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-        }
-    }
-
-    public void putUnsignedInts(long... unsignedInts) {
-        for (long l : unsignedInts)
-            putUnsignedInt(l);
-    }
-
-    public void putUnsignedBool(boolean value) {
-        putUnsignedInt(value ? 1L : 0L);
-    }
-
-    public static ByteArray joinAndReset(ByteArray... arrays) {
+    public static ByteArray joinAndReset(AbstractByteArray... arrays) {
         int totalSize = 0;
-        for (ByteArray a : arrays) {
-            totalSize += a.getWriteCursor();
+        for (AbstractByteArray a : arrays) {
+            totalSize += a.getWriteCursor() - a.getReadCursor();
         }
         ByteArray result = new ByteArray(totalSize);
-        for (ByteArray a : arrays) {
+        for (AbstractByteArray a : arrays) {
             int pos = a.getReadCursor();
             result.putArray(a);
             a.setReadCursor(pos);
@@ -340,13 +203,13 @@ public class ByteArray {
         return result;
     }
 
-    public static ByteArray join(ByteArray... arrays) {
+    public static ByteArray join(AbstractByteArray... arrays) {
         int totalSize = 0;
-        for (ByteArray a : arrays) {
-            totalSize += a.getWriteCursor();
+        for (AbstractByteArray a : arrays) {
+            totalSize += a.getWriteCursor() - a.getReadCursor();
         }
         ByteArray result = new ByteArray(totalSize);
-        for (ByteArray a : arrays) {
+        for (AbstractByteArray a : arrays) {
             result.putArray(a);
         }
         return result;
@@ -0,0 +1,389 @@
+package org.jglr.flows.io;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A <code>ByteArrayPool</code> lends {@link ByteArray} instances and takes them back once they are no longer needed,
+ * so that their backing arrays can be reused instead of being reallocated.<br/>
+ * Arrays are sorted into power-of-two size classes. Each thread keeps a small cache per size class, backed by a
+ * bounded pool shared between all threads. The caches of threads which have died are dropped when another thread
+ * starts using the pool, or when the footprint is computed.<br/>
+ * Arrays obtained from {@link #acquire(int)} must be given back with {@link #release(ByteArray)} and must not be used
+ * afterwards. Their contents are <b>not</b> cleared when they are lent again, only their indexes, length and byte
+ * order are reset.<br/>
+ * In debug mode, the pool records where each array was acquired and reports arrays that were garbage collected
+ * without having been released.
+ */
+public class ByteArrayPool {
+
+    /**
+     * Default size of the smallest size class
+     */
+    public static final int DEFAULT_MIN_CLASS_SIZE = 64;
+
+    /**
+     * Default size of the largest size class. Larger requests are allocated without pooling
+     */
+    public static final int DEFAULT_MAX_CLASS_SIZE = 1024 * 1024;
+
+    /**
+     * Default number of arrays cached by each thread for each size class
+     */
+    public static final int DEFAULT_THREAD_LOCAL_CAPACITY = 8;
+
+    /**
+     * Default number of arrays kept in the shared pool for each size class
+     */
+    public static final int DEFAULT_SHARED_CAPACITY = 64;
+
+    private final int minShift;
+    private final int classCount;
+    private final int threadLocalCapacity;
+    private final int sharedCapacity;
+    private final ThreadLocal<LocalCache> localCaches;
+    /**
+     * The caches of every thread, so that the pool can account for them and drop those of dead threads
+     */
+    private final Set<LocalCache> allLocalCaches;
+    private final ConcurrentLinkedQueue<ByteArray>[] sharedPools;
+    private final AtomicInteger[] sharedCounts;
+    private final boolean debug;
+    private final ReferenceQueue<ByteArray> leakQueue;
+    private final Set<Lease> leases;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder outstanding;
+    /**
+     * Number of bytes held by the shared pool. The caches of the threads count their own
+     */
+    private final LongAdder footprint;
+    private final LongAdder leaks;
+
+    /**
+     * Creates a new pool with the default size classes and capacities, not in debug mode
+     */
+    public ByteArrayPool() {
+        this(false);
+    }
+
+    /**
+     * Creates a new pool with the default size classes and capacities
+     * @param debug
+     *          Whether the pool should track where arrays are acquired, in order to report leaks
+     */
+    public ByteArrayPool(boolean debug) {
+        this(DEFAULT_MIN_CLASS_SIZE, DEFAULT_MAX_CLASS_SIZE, DEFAULT_THREAD_LOCAL_CAPACITY, DEFAULT_SHARED_CAPACITY, debug);
+    }
+
+    /**
+     * Creates a new pool
+     * @param minClassSize
+     *          The size of the smallest size class, rounded up to a power of two
+     * @param maxClassSize
+     *          The size of the largest size class, rounded up to a power of two. Larger requests are allocated
+     *          without pooling
+     * @param threadLocalCapacity
+     *          The number of arrays each thread caches for each size class
+     * @param sharedCapacity
+     *          The number of arrays the shared pool keeps for each size class
+     * @param debug
+     *          Whether the pool should track where arrays are acquired, in order to report leaks
+     */
+    @SuppressWarnings("unchecked")
+    public ByteArrayPool(int minClassSize, int maxClassSize, int threadLocalCapacity, int sharedCapacity, boolean debug) {
+        if(minClassSize <= 0 || maxClassSize < minClassSize || maxClassSize > (1 << 30))
+            throw new IllegalArgumentException("Invalid size classes: ["+minClassSize+", "+maxClassSize+"]");
+        if(threadLocalCapacity < 0 || sharedCapacity < 0)
+            throw new IllegalArgumentException("Pool capacities cannot be negative");
+        this.minShift = ceilLog2(minClassSize);
+        this.classCount = ceilLog2(maxClassSize) - minShift + 1;
+        this.threadLocalCapacity = threadLocalCapacity;
+        this.sharedCapacity = sharedCapacity;
+        this.debug = debug;
+        allLocalCaches = ConcurrentHashMap.newKeySet();
+        localCaches = ThreadLocal.withInitial(() -> {
+            purgeDeadCaches();
+            LocalCache cache = new LocalCache((ArrayDeque<ByteArray>[]) new ArrayDeque<?>[classCount]);
+            allLocalCaches.add(cache);
+            return cache;
+        });
+        sharedPools = (ConcurrentLinkedQueue<ByteArray>[]) new ConcurrentLinkedQueue<?>[classCount];
+        sharedCounts = new AtomicInteger[classCount];
+        for (int i = 0; i < classCount; i++) {
+            sharedPools[i] = new ConcurrentLinkedQueue<>();
+            sharedCounts[i] = new AtomicInteger();
+        }
+        leakQueue = debug ? new ReferenceQueue<>() : null;
+        leases = debug ? ConcurrentHashMap.newKeySet() : null;
+        hits = new LongAdder();
+        misses = new LongAdder();
+        outstanding = new LongAdder();
+        footprint = new LongAdder();
+        leaks = new LongAdder();
+    }
+
+    private static int ceilLog2(int value) {
+        return value <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(value - 1);
+    }
+
+    private static int floorLog2(int value) {
+        return 31 - Integer.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Lends an empty ByteArray able to hold at least <code>minCapacity</code> bytes without growing
+     * @param minCapacity
+     *          The minimal capacity
+     * @return
+     *          An empty ByteArray, to be given back with {@link #release(ByteArray)}
+     */
+    public ByteArray acquire(int minCapacity) {
+        if(minCapacity < 0)
+            throw new IllegalArgumentException("Capacity cannot be negative: "+minCapacity);
+        if(debug) {
+            checkLeaks();
+        }
+        int sizeClass = Math.max(0, ceilLog2(minCapacity) - minShift);
+        ByteArray result = null;
+        if(sizeClass < classCount) {
+            LocalCache local = localCaches.get();
+            ArrayDeque<ByteArray> cache = local.deques[sizeClass];
+            if(cache != null) {
+                result = cache.pollLast();
+            }
+            if(result != null) {
+                local.bytes -= result.capacity();
+            } else {
+                result = sharedPools[sizeClass].poll();
+                if(result != null) {
+                    sharedCounts[sizeClass].decrementAndGet();
+                    footprint.add(-result.capacity());
+                }
+            }
+        }
+        if(result != null) {
+            hits.increment();
+            result.reset();
+            result.size = 0;
+            result.setByteOrder(ByteOrder.nativeOrder());
+            result.setGrowthFactor(AbstractByteArray.DEFAULT_GROWTH_FACTOR);
+            result.setMaxCapacity(AbstractByteArray.DEFAULT_MAX_CAPACITY);
+        } else {
+            misses.increment();
+            result = new ByteArray(sizeClass < classCount ? 1 << (sizeClass + minShift) : minCapacity);
+        }
+        outstanding.increment();
+        if(debug) {
+            Lease lease = new Lease(result, leakQueue);
+            leases.add(lease);
+            result.poolLease = lease;
+        } else {
+            result.poolLease = this;
+        }
+        return result;
+    }
+
+    /**
+     * Gives back an array previously obtained from {@link #acquire(int)}. The array must not be used afterwards.
+     * @param array
+     *          The array to give back
+     */
+    public void release(ByteArray array) {
+        Object lease = array.poolLease;
+        if(lease instanceof Lease && ((Lease) lease).pool == this) {
+            ((Lease) lease).clear();
+            leases.remove(lease);
+        } else if(lease != this) {
+            throw new IllegalStateException("The given array was not acquired from this pool, or was already released");
+        }
+        array.poolLease = null;
+        outstanding.decrement();
+
+        int capacity = array.capacity();
+        int sizeClass = floorLog2(Math.max(1, capacity)) - minShift;
+        if(sizeClass < 0 || sizeClass >= classCount) {
+            // too small to be useful, or too large to be kept around
+            return;
+        }
+        LocalCache local = localCaches.get();
+        ArrayDeque<ByteArray> cache = local.deques[sizeClass];
+        if(cache == null) {
+            cache = local.deques[sizeClass] = new ArrayDeque<>(threadLocalCapacity);
+        }
+        if(cache.size() < threadLocalCapacity) {
+            cache.addLast(array);
+            local.bytes += capacity;
+        } else if(sharedCounts[sizeClass].incrementAndGet() <= sharedCapacity) {
+            sharedPools[sizeClass].offer(array);
+            footprint.add(capacity);
+        } else {
+            sharedCounts[sizeClass].decrementAndGet();
+        }
+    }
+
+    /**
+     * Forgets the caches of the threads which have died, their arrays are left to the garbage collector
+     */
+    private void purgeDeadCaches() {
+        allLocalCaches.removeIf(cache -> {
+            Thread owner = cache.owner.get();
+            return owner == null || !owner.isAlive();
+        });
+    }
+
+    /**
+     * Copies the given bytes into a pooled ByteArray
+     * @param bytes
+     *          The bytes to copy
+     * @return
+     *          A pooled ByteArray holding a copy of <code>bytes</code>, to be given back with {@link #release(ByteArray)}
+     * @see ByteArray#wrap(byte[])
+     */
+    public ByteArray wrap(byte[] bytes) {
+        ByteArray result = acquire(bytes.length);
+        result.putArray(bytes);
+        return result;
+    }
+
+    /**
+     * Joins the readable bytes of the given arrays into a pooled ByteArray
+     * @param arrays
+     *          The arrays to join, their read indexes are moved to their write indexes
+     * @return
+     *          A pooled ByteArray, to be given back with {@link #release(ByteArray)}
+     * @see ByteArray#join(AbstractByteArray...)
+     */
+    public ByteArray join(AbstractByteArray... arrays) {
+        int totalSize = 0;
+        for (AbstractByteArray a : arrays) {
+            totalSize += a.getWriteCursor() - a.getReadCursor();
+        }
+        ByteArray result = acquire(totalSize);
+        for (AbstractByteArray a : arrays) {
+            result.putArray(a);
+        }
+        return result;
+    }
+
+    /**
+     * Reports arrays that were garbage collected without having been released. Only available in debug mode, where it
+     * is also called on each {@link #acquire(int)}.<br/>
+     * The place each leaked array was acquired at is printed to the standard error stream.
+     * @return
+     *          The number of leaks found by this call
+     */
+    public int checkLeaks() {
+        if(!debug)
+            return 0;
+        int found = 0;
+        Lease lease;
+        while((lease = (Lease) leakQueue.poll()) != null) {
+            if(leases.remove(lease)) {
+                found++;
+                leaks.increment();
+                outstanding.decrement();
+                lease.acquisition.printStackTrace();
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns whether this pool tracks leaks
+     * @return
+     *          <code>true</code> if this pool is in debug mode
+     */
+    public boolean isDebug() {
+        return debug;
+    }
+
+    /**
+     * Returns the number of acquisitions served by a previously released array
+     * @return
+     *          The number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of acquisitions that had to allocate a new array
+     * @return
+     *          The number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of arrays currently lent out
+     * @return
+     *          The number of arrays acquired and not yet released (nor detected as leaked)
+     */
+    public long getOutstanding() {
+        return outstanding.sum();
+    }
+
+    /**
+     * Returns the number of bytes held by the released arrays kept in this pool, in the shared pool as well as in the
+     * caches of every live thread. Reading the caches of other threads is racy, so the result is approximate while
+     * they use the pool.
+     * @return
+     *          The pool footprint, in bytes
+     */
+    public long getFootprint() {
+        purgeDeadCaches();
+        long total = footprint.sum();
+        for (LocalCache cache : allLocalCaches) {
+            total += cache.bytes;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of arrays that were garbage collected without having been released. Always 0 outside of
+     * debug mode
+     * @return
+     *          The number of leaks detected so far
+     */
+    public long getLeaks() {
+        return leaks.sum();
+    }
+
+    /**
+     * The arrays cached by a thread, only modified by that thread
+     */
+    private static class LocalCache {
+
+        private final WeakReference<Thread> owner = new WeakReference<>(Thread.currentThread());
+        private final ArrayDeque<ByteArray>[] deques;
+        /**
+         * Number of bytes held by the cached arrays. Only written by the owner, read by any thread
+         */
+        private volatile long bytes;
+
+        private LocalCache(ArrayDeque<ByteArray>[] deques) {
+            this.deques = deques;
+        }
+    }
+
+    private class Lease extends WeakReference<ByteArray> {
+
+        private final ByteArrayPool pool = ByteArrayPool.this;
+        private final Throwable acquisition;
+
+        private Lease(ByteArray array, ReferenceQueue<ByteArray> queue) {
+            super(array, queue);
+            acquisition = new Throwable("Leaked ByteArray of capacity "+array.capacity()+" was acquired here");
+        }
+    }
+}
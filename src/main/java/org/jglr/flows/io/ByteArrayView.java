@@ -0,0 +1,148 @@
+package org.jglr.flows.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.List;
+
+/**
+ * A view over the storage of another byte array, with its own indexes and byte order.<br/>
+ * Created by {@link AbstractByteArray#slice(int, int)}, {@link AbstractByteArray#duplicate()} and
+ * {@link AbstractByteArray#asReadOnly()}.
+ */
+class ByteArrayView extends AbstractByteArray {
+
+    private final AbstractByteArray parent;
+    private final int offset;
+    /**
+     * Length of the window over the parent, or -1 if the view covers the whole parent and follows its length
+     */
+    private final int fixedLength;
+    private final boolean readOnly;
+
+    ByteArrayView(AbstractByteArray parent, int offset, int fixedLength, boolean readOnly) {
+        this.parent = parent;
+        this.offset = offset;
+        this.fixedLength = fixedLength;
+        this.readOnly = readOnly;
+        byteOrder = parent.byteOrder;
+        if(fixedLength >= 0) {
+            size = fixedLength;
+            writeCursor = fixedLength;
+        } else {
+            size = parent.length();
+            readCursor = parent.getReadCursor();
+            writeCursor = parent.getWriteCursor();
+        }
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    @Override
+    public int length() {
+        return fixedLength >= 0 ? fixedLength : parent.length();
+    }
+
+    @Override
+    public int capacity() {
+        return fixedLength >= 0 ? fixedLength : parent.capacity();
+    }
+
+    @Override
+    void reserve(int index, int count) {
+        if(readOnly)
+            throw new ReadOnlyBufferException();
+        if(fixedLength >= 0) {
+            super.reserve(index, count);
+        } else {
+            parent.reserve(index, count);
+        }
+    }
+
+    @Override
+    public void ensureCapacity(int minCapacity) {
+        if(fixedLength >= 0) {
+            super.ensureCapacity(minCapacity);
+        } else {
+            parent.ensureCapacity(minCapacity);
+        }
+    }
+
+    @Override
+    public void trimToSize() {
+        if(fixedLength < 0) {
+            parent.trimToSize();
+        }
+    }
+
+    @Override
+    protected void reallocate(int newCapacity) {
+        throw new IllegalStateException("A slice cannot grow past its length ("+fixedLength+")");
+    }
+
+    @Override
+    protected byte getByte(int index) {
+        return parent.getByte(offset + index);
+    }
+
+    @Override
+    protected void setByte(int index, byte b) {
+        if(readOnly)
+            throw new ReadOnlyBufferException();
+        parent.setByte(offset + index, b);
+    }
+
+    @Override
+    protected void writeWord(int index, long value, int byteCount) {
+        if(readOnly)
+            throw new ReadOnlyBufferException();
+        if(parent.byteOrder == byteOrder) {
+            parent.writeWord(offset + index, value, byteCount);
+        } else {
+            super.writeWord(index, value, byteCount);
+        }
+    }
+
+    @Override
+    protected long readWord(int index, int byteCount) {
+        if(parent.byteOrder == byteOrder) {
+            return parent.readWord(offset + index, byteCount);
+        }
+        return super.readWord(index, byteCount);
+    }
+
+    @Override
+    protected void writeBytes(int index, byte[] src, int offset, int length) {
+        if(readOnly)
+            throw new ReadOnlyBufferException();
+        parent.writeBytes(this.offset + index, src, offset, length);
+    }
+
+    @Override
+    protected void readBytes(int index, byte[] dst, int offset, int length) {
+        parent.readBytes(this.offset + index, dst, offset, length);
+    }
+
+    @Override
+    protected void copyTo(int index, AbstractByteArray dst, int dstIndex, int length) {
+        parent.copyTo(offset + index, dst, dstIndex, length);
+    }
+
+    @Override
+    protected ByteBuffer bufferView(int index, int length) {
+        return parent.bufferView(offset + index, length);
+    }
+
+    @Override
+    void collectBuffers(int index, int length, List<ByteBuffer> buffers) {
+        parent.collectBuffers(offset + index, length, buffers);
+    }
+
+    @Override
+    public AbstractByteArray slice(int offset, int length) {
+        checkReadable(offset, length);
+        return new ByteArrayView(parent, this.offset + offset, length, readOnly);
+    }
+}
@@ -0,0 +1,84 @@
+package org.jglr.flows.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Word-at-a-time ("SWAR") search and comparison over buffers, reading 8 bytes per step instead of one.<br/>
+ * All indexes are absolute: the position and limit of the buffers are ignored. Their byte order only changes how
+ * words are read, never the result.
+ */
+final class ByteSearch {
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private ByteSearch() {
+    }
+
+    /**
+     * Finds the first occurrence of a byte
+     * @param buffer
+     *          The buffer to search
+     * @param from
+     *          The index to start from, inclusive
+     * @param to
+     *          The index to stop at, exclusive
+     * @param value
+     *          The byte to find
+     * @return
+     *          The index of the first occurrence, or -1 if there is none
+     */
+    static int indexOf(ByteBuffer buffer, int from, int to, byte value) {
+        long pattern = (value & 0xFFL) * ONES;
+        boolean little = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+        int index = from;
+        for (; index + 8 <= to; index += 8) {
+            long word = buffer.getLong(index) ^ pattern;
+            // sets the high bit of each byte that was zero, that is equal to value. Unlike the shorter
+            // (word - ONES) & ~word trick, no carry can flag the byte following a match
+            long matches = ~(((word & LOW_BITS) + LOW_BITS) | word | LOW_BITS);
+            if(matches != 0) {
+                return index + (firstByte(matches, little));
+            }
+        }
+        for (; index < to; index++) {
+            if(buffer.get(index) == value)
+                return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first byte that differs between two ranges of the same length
+     * @return
+     *          The index of the first different byte, relative to the start of the ranges, or -1 if they are equal
+     */
+    static int mismatch(ByteBuffer a, int aIndex, ByteBuffer b, int bIndex, int length) {
+        boolean little = a.order() == ByteOrder.LITTLE_ENDIAN;
+        boolean sameOrder = a.order() == b.order();
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            long wordA = a.getLong(aIndex + i);
+            long wordB = b.getLong(bIndex + i);
+            if(!sameOrder) {
+                wordB = Long.reverseBytes(wordB);
+            }
+            if(wordA != wordB) {
+                return i + firstByte(wordA ^ wordB, little);
+            }
+        }
+        for (; i < length; i++) {
+            if(a.get(aIndex + i) != b.get(bIndex + i))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the position in memory of the first non-zero byte of a word
+     */
+    private static int firstByte(long word, boolean little) {
+        return (little ? Long.numberOfTrailingZeros(word) : Long.numberOfLeadingZeros(word)) >>> 3;
+    }
+}
@@ -0,0 +1,106 @@
+package org.jglr.flows.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Checksum;
+
+/**
+ * Computes the CRC-32C (Castagnoli) checksum of a stream of bytes, as used by iSCSI, SCTP, ext4 or Kafka.<br/>
+ * Uses the "slicing-by-8" algorithm, which consumes 8 bytes per step through 8 lookup tables.
+ */
+public final class CRC32C implements Checksum {
+
+    /**
+     * Reversed Castagnoli polynomial
+     */
+    private static final int POLYNOMIAL = 0x82F63B78;
+
+    private static final int[][] TABLES = new int[8][256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc >>> 1) ^ (POLYNOMIAL & -(crc & 1));
+            }
+            TABLES[0][i] = crc;
+        }
+        for (int i = 0; i < 256; i++) {
+            for (int t = 1; t < 8; t++) {
+                int previous = TABLES[t - 1][i];
+                TABLES[t][i] = (previous >>> 8) ^ TABLES[0][previous & 0xFF];
+            }
+        }
+    }
+
+    private int crc = 0xFFFFFFFF;
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLES[0][(crc ^ b) & 0xFF];
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        if(offset < 0 || length < 0 || offset + length > bytes.length)
+            throw new IndexOutOfBoundsException("Size: "+bytes.length+", offset: "+offset+", length: "+length);
+        int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+        int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+        int crc = this.crc;
+        int end = offset + length;
+        for (; offset + 8 <= end; offset += 8) {
+            int low = crc ^ ((bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8
+                    | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24);
+            crc = t7[low & 0xFF] ^ t6[(low >>> 8) & 0xFF] ^ t5[(low >>> 16) & 0xFF] ^ t4[low >>> 24]
+                    ^ t3[bytes[offset + 4] & 0xFF] ^ t2[bytes[offset + 5] & 0xFF]
+                    ^ t1[bytes[offset + 6] & 0xFF] ^ t0[bytes[offset + 7] & 0xFF];
+        }
+        for (; offset < end; offset++) {
+            crc = (crc >>> 8) ^ t0[(crc ^ bytes[offset]) & 0xFF];
+        }
+        this.crc = crc;
+    }
+
+    /**
+     * Updates the checksum with the remaining bytes of the given buffer, and moves its position to its limit
+     * @param buffer
+     *          The bytes to checksum
+     */
+    public void update(ByteBuffer buffer) {
+        if(buffer.hasArray()) {
+            update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+            int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+            boolean little = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+            int crc = this.crc;
+            int index = buffer.position();
+            int end = buffer.limit();
+            for (; index + 8 <= end; index += 8) {
+                long word = buffer.getLong(index);
+                if(!little) {
+                    word = Long.reverseBytes(word);
+                }
+                int low = crc ^ (int) word;
+                int high = (int) (word >>> 32);
+                crc = t7[low & 0xFF] ^ t6[(low >>> 8) & 0xFF] ^ t5[(low >>> 16) & 0xFF] ^ t4[low >>> 24]
+                        ^ t3[high & 0xFF] ^ t2[(high >>> 8) & 0xFF] ^ t1[(high >>> 16) & 0xFF] ^ t0[high >>> 24];
+            }
+            for (; index < end; index++) {
+                crc = (crc >>> 8) ^ t0[(crc ^ buffer.get(index)) & 0xFF];
+            }
+            this.crc = crc;
+        }
+        buffer.position(buffer.limit());
+    }
+
+    @Override
+    public long getValue() {
+        return ~crc & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+}
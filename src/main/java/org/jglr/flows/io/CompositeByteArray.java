@@ -0,0 +1,282 @@
+package org.jglr.flows.io;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Represents a byte array made of several other byte arrays (its components), stitched together without copying
+ * their contents.<br/>
+ * Reading from a CompositeByteArray reads from its components, and writing inside the range they cover writes
+ * through to them. Words spanning over two components are handled transparently, respecting the byte order of the
+ * CompositeByteArray.<br/>
+ * Writing past the end appends a new component owned by the CompositeByteArray. Call {@link #consolidate()} when
+ * a single contiguous array is really needed.
+ */
+public class CompositeByteArray extends AbstractByteArray {
+
+    private AbstractByteArray[] components;
+    /**
+     * Index of the first byte of each component, inside its component
+     */
+    private int[] offsets;
+    /**
+     * Index of the first byte of each component, inside this CompositeByteArray. Has one more element than the
+     * number of components, that is the total capacity
+     */
+    private int[] starts;
+    private int count;
+    /**
+     * Index of the last component accessed, sequential accesses usually stay inside it
+     */
+    private int lastComponent;
+
+    /**
+     * Creates an empty CompositeByteArray instance
+     */
+    public CompositeByteArray() {
+        components = new AbstractByteArray[4];
+        offsets = new int[4];
+        starts = new int[5];
+    }
+
+    /**
+     * Creates a CompositeByteArray instance made of the readable bytes (between the read and write indexes) of the
+     * given arrays. The indexes of the given arrays are not modified.
+     * @param arrays
+     *          The components
+     * @return
+     *          A new CompositeByteArray
+     */
+    public static CompositeByteArray of(AbstractByteArray... arrays) {
+        CompositeByteArray result = new CompositeByteArray();
+        for (AbstractByteArray a : arrays) {
+            result.addComponent(a);
+        }
+        return result;
+    }
+
+    /**
+     * Appends the readable bytes (between the read and write indexes) of the given array as a new component.
+     * The indexes of the given array are not modified. If the write index of this CompositeByteArray was at its end,
+     * it is moved to the new end.
+     * @param array
+     *          The new component
+     */
+    public void addComponent(AbstractByteArray array) {
+        addComponent(array, array.getReadCursor(), array.getWriteCursor() - array.getReadCursor());
+    }
+
+    /**
+     * Appends part of the given array as a new component. Its bytes are not copied: modifications made through the
+     * CompositeByteArray are visible in <code>array</code> and vice versa.
+     * @param array
+     *          The new component
+     * @param offset
+     *          The index of the first byte of the component inside <code>array</code>
+     * @param length
+     *          The number of bytes of the component
+     */
+    public void addComponent(AbstractByteArray array, int offset, int length) {
+        if(offset < 0 || length < 0 || offset + length > array.length())
+            throw new IndexOutOfBoundsException("Size: "+array.length()+", offset: "+offset+", length: "+length);
+        if(array == this)
+            throw new IllegalArgumentException("A CompositeByteArray cannot be one of its own components");
+        // drop the unused capacity at the end, so that the new component directly follows the written bytes
+        if(capacity() > size) {
+            reallocate(size);
+        }
+        if(length == 0)
+            return;
+        append(array, offset, length);
+        if(writeCursor == size) {
+            writeCursor += length;
+        }
+        size += length;
+    }
+
+    private void append(AbstractByteArray array, int offset, int length) {
+        if(count == components.length) {
+            components = Arrays.copyOf(components, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2);
+            starts = Arrays.copyOf(starts, count * 2 + 1);
+        }
+        components[count] = array;
+        offsets[count] = offset;
+        starts[count + 1] = starts[count] + length;
+        count++;
+    }
+
+    /**
+     * Returns the number of components of this CompositeByteArray
+     * @return
+     *          The number of components
+     */
+    public int getComponentCount() {
+        return count;
+    }
+
+    /**
+     * Copies the contents of every component into a single {@link ByteArray}, which then becomes the only component.
+     * The original components are no longer shared afterwards.
+     * @return
+     *          The new single component, holding a copy of the bytes of this CompositeByteArray
+     */
+    public ByteArray consolidate() {
+        ByteArray result = new ByteArray(size);
+        copyTo(0, result, 0, size);
+        result.size = size;
+        result.setByteOrder(byteOrder);
+        Arrays.fill(components, 0, count, null);
+        count = 0;
+        lastComponent = 0;
+        if(size > 0) {
+            append(result, 0, size);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the component holding the byte at the given index
+     * @param index
+     *          The index, inside this CompositeByteArray
+     * @return
+     *          The index of the component
+     */
+    private int componentAt(int index) {
+        int last = lastComponent;
+        if(last < count && index >= starts[last] && index < starts[last + 1])
+            return last;
+        if(index < 0 || index >= starts[count])
+            throw new IndexOutOfBoundsException("Capacity: "+capacity()+", index: "+index);
+        // components are never empty, so starts is strictly increasing
+        int found = Arrays.binarySearch(starts, 0, count + 1, index);
+        if(found < 0) {
+            found = -found - 2;
+        }
+        lastComponent = found;
+        return found;
+    }
+
+    @Override
+    protected byte getByte(int index) {
+        int c = componentAt(index);
+        return components[c].getByte(offsets[c] + index - starts[c]);
+    }
+
+    @Override
+    protected void setByte(int index, byte b) {
+        int c = componentAt(index);
+        components[c].setByte(offsets[c] + index - starts[c], b);
+    }
+
+    @Override
+    protected void writeWord(int index, long value, int byteCount) {
+        int c = componentAt(index);
+        AbstractByteArray component = components[c];
+        if(index + byteCount <= starts[c + 1] && component.byteOrder == byteOrder) {
+            component.writeWord(offsets[c] + index - starts[c], value, byteCount);
+        } else {
+            super.writeWord(index, value, byteCount);
+        }
+    }
+
+    @Override
+    protected long readWord(int index, int byteCount) {
+        int c = componentAt(index);
+        AbstractByteArray component = components[c];
+        if(index + byteCount <= starts[c + 1] && component.byteOrder == byteOrder) {
+            return component.readWord(offsets[c] + index - starts[c], byteCount);
+        }
+        return super.readWord(index, byteCount);
+    }
+
+    @Override
+    protected void writeBytes(int index, byte[] src, int offset, int length) {
+        while(length > 0) {
+            int c = componentAt(index);
+            int chunk = Math.min(length, starts[c + 1] - index);
+            components[c].writeBytes(offsets[c] + index - starts[c], src, offset, chunk);
+            index += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    @Override
+    protected void readBytes(int index, byte[] dst, int offset, int length) {
+        while(length > 0) {
+            int c = componentAt(index);
+            int chunk = Math.min(length, starts[c + 1] - index);
+            components[c].readBytes(offsets[c] + index - starts[c], dst, offset, chunk);
+            index += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    @Override
+    protected void copyTo(int index, AbstractByteArray dst, int dstIndex, int length) {
+        while(length > 0) {
+            int c = componentAt(index);
+            int chunk = Math.min(length, starts[c + 1] - index);
+            components[c].copyTo(offsets[c] + index - starts[c], dst, dstIndex, chunk);
+            index += chunk;
+            dstIndex += chunk;
+            length -= chunk;
+        }
+    }
+
+    @Override
+    protected ByteBuffer bufferView(int index, int length) {
+        int c = componentAt(index);
+        if(index + length <= starts[c + 1]) {
+            return components[c].bufferView(offsets[c] + index - starts[c], length);
+        }
+        // spans over several components, asByteBuffers() avoids this copy
+        return super.bufferView(index, length);
+    }
+
+    @Override
+    void collectBuffers(int index, int length, List<ByteBuffer> buffers) {
+        while(length > 0) {
+            int c = componentAt(index);
+            int chunk = Math.min(length, starts[c + 1] - index);
+            components[c].collectBuffers(offsets[c] + index - starts[c], chunk, buffers);
+            index += chunk;
+            length -= chunk;
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return starts[count];
+    }
+
+    /**
+     * Grows by appending a new {@link ByteArray} component, or shrinks by dropping or shortening the last components
+     * @param newCapacity
+     *          The new capacity
+     */
+    @Override
+    protected void reallocate(int newCapacity) {
+        int capacity = capacity();
+        if(newCapacity > capacity) {
+            int extra = newCapacity - capacity;
+            ByteArray tail = new ByteArray(extra);
+            tail.size = extra;
+            tail.setByteOrder(byteOrder);
+            append(tail, 0, extra);
+        } else {
+            while(count > 0 && starts[count - 1] >= newCapacity) {
+                components[--count] = null;
+            }
+            if(count > 0) {
+                starts[count] = newCapacity;
+            }
+            if(lastComponent >= count) {
+                lastComponent = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package org.jglr.flows.io;
+
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Represents a fixed-size byte array several threads can append to at the same time, read by a single consumer
+ * thread.<br/>
+ * Producers never lock: they {@link #claim(int)} a region by moving a shared cursor atomically, fill it in parallel
+ * with the indexed put methods, then {@link #publish(long, int)} it. Regions are published in the order they were
+ * claimed, so the consumer only ever sees complete records, in claim order, through {@link #drainTo(AbstractByteArray)}.
+ * <br/>
+ * Storage is a ring: space is reused once the consumer has drained it. When there is not enough room left, claims
+ * fail instead of blocking or growing. Positions are <code>long</code>s that keep increasing and never wrap.
+ */
+public class ConcurrentByteArray {
+
+    /**
+     * Number of failed checks a thread waiting for the previous regions to be published makes before yielding
+     */
+    private static final int SPINS_BEFORE_YIELD = 64;
+
+    private final byte[] data;
+    private final int mask;
+    private final ByteOrder byteOrder;
+    /**
+     * End of the last claimed region
+     */
+    private final AtomicLong claimed = new AtomicLong();
+    /**
+     * End of the last published region, everything before it can be read by the consumer
+     */
+    private final AtomicLong published = new AtomicLong();
+    /**
+     * Position up to which the consumer has read, producers cannot claim more than the capacity past it
+     */
+    private final AtomicLong consumed = new AtomicLong();
+
+    /**
+     * Creates an empty ConcurrentByteArray instance, encoding words in the native byte order.
+     * @param capacity
+     *          The capacity, rounded up to a power of two
+     */
+    public ConcurrentByteArray(int capacity) {
+        this(capacity, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Creates an empty ConcurrentByteArray instance.
+     * @param capacity
+     *          The capacity, rounded up to a power of two
+     * @param byteOrder
+     *          The byte order used by the put methods. Cannot be changed afterwards, so that producers never race on it
+     */
+    public ConcurrentByteArray(int capacity, ByteOrder byteOrder) {
+        if(capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30, got "+capacity);
+        data = new byte[capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1];
+        mask = data.length - 1;
+        this.byteOrder = byteOrder;
+    }
+
+    /**
+     * Reserves <code>length</code> bytes for the calling thread. Safe to call from any number of threads.<br/>
+     * The region must then be filled with the indexed put methods and published with {@link #publish(long, int)}, even
+     * if the producer gives up on it: regions claimed after it are not visible to the consumer until it is published.
+     * @param length
+     *          The number of bytes to reserve
+     * @return
+     *          The position of the first byte of the region, or -1 if there is not enough room left
+     */
+    public long claim(int length) {
+        if(length < 0 || length > data.length)
+            throw new IllegalArgumentException("Cannot claim "+length+" bytes, capacity is "+data.length);
+        while(true) {
+            long start = claimed.get();
+            if(start + length - consumed.get() > data.length)
+                return -1;
+            if(claimed.compareAndSet(start, start + length))
+                return start;
+        }
+    }
+
+    /**
+     * Makes a filled region visible to the consumer. Waits for the regions claimed before it to be published first.
+     * @param position
+     *          The position returned by {@link #claim(int)}
+     * @param length
+     *          The length given to {@link #claim(int)}
+     */
+    public void publish(long position, int length) {
+        int spins = 0;
+        while(published.get() != position) {
+            if(++spins > SPINS_BEFORE_YIELD) {
+                Thread.yield();
+            }
+        }
+        // ordered store: the bytes of the region are written before the consumer can see the new end
+        published.lazySet(position + length);
+    }
+
+    /**
+     * Claims, fills and publishes a region holding the given bytes
+     * @param bytes
+     *          The bytes to append
+     * @return
+     *          <code>true</code> if the bytes were appended, <code>false</code> if there was not enough room left
+     */
+    public boolean append(byte[] bytes) {
+        return append(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Claims, fills and publishes a region holding <code>length</code> bytes of the given array
+     * @param bytes
+     *          The array to copy from
+     * @param offset
+     *          The index in <code>bytes</code> of the first byte to append
+     * @param length
+     *          The number of bytes to append
+     * @return
+     *          <code>true</code> if the bytes were appended, <code>false</code> if there was not enough room left
+     */
+    public boolean append(byte[] bytes, int offset, int length) {
+        if(offset < 0 || length < 0 || offset + length > bytes.length)
+            throw new IndexOutOfBoundsException("Size: "+bytes.length+", offset: "+offset+", length: "+length);
+        long position = claim(length);
+        if(position < 0)
+            return false;
+        putArray(bytes, offset, length, position);
+        publish(position, length);
+        return true;
+    }
+
+    /**
+     * Sets a byte inside a claimed region
+     * @param b
+     *          The byte to set
+     * @param position
+     *          The position of the byte
+     */
+    public void put(byte b, long position) {
+        data[(int) position & mask] = b;
+    }
+
+    /**
+     * Sets a short inside a claimed region
+     * @param s
+     *          The short to set
+     * @param position
+     *          The position of the first byte
+     */
+    public void putShort(short s, long position) {
+        writeWord(position, s, 2);
+    }
+
+    /**
+     * Sets an int inside a claimed region
+     * @param i
+     *          The int to set
+     * @param position
+     *          The position of the first byte
+     */
+    public void putInt(int i, long position) {
+        writeWord(position, i, 4);
+    }
+
+    /**
+     * Sets a long inside a claimed region
+     * @param l
+     *          The long to set
+     * @param position
+     *          The position of the first byte
+     */
+    public void putLong(long l, long position) {
+        writeWord(position, l, 8);
+    }
+
+    /**
+     * Copies bytes inside a claimed region
+     * @param bytes
+     *          The array to copy from
+     * @param offset
+     *          The index in <code>bytes</code> of the first byte to copy
+     * @param length
+     *          The number of bytes to copy
+     * @param position
+     *          The position of the first byte to write
+     */
+    public void putArray(byte[] bytes, int offset, int length, long position) {
+        int start = (int) position & mask;
+        int first = Math.min(length, data.length - start);
+        System.arraycopy(bytes, offset, data, start, first);
+        System.arraycopy(bytes, offset + first, data, 0, length - first);
+    }
+
+    private void writeWord(long position, long value, int byteCount) {
+        if(byteOrder == ByteOrder.BIG_ENDIAN) {
+            for (int i = 0; i < byteCount; i++) {
+                data[(int) (position + i) & mask] = (byte) (value >>> (8*(byteCount-i-1)));
+            }
+        } else {
+            for (int i = 0; i < byteCount; i++) {
+                data[(int) (position + i) & mask] = (byte) (value >>> (8*i));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of published bytes the consumer has not drained yet
+     * @return
+     *          The number of bytes {@link #drainTo(AbstractByteArray)} would copy
+     */
+    public int readableBytes() {
+        return (int) (published.get() - consumed.get());
+    }
+
+    /**
+     * Copies every published byte the consumer has not drained yet to the write index of <code>destination</code>,
+     * and frees their space for the producers. Must only be called by one thread at a time.
+     * @param destination
+     *          The byte array to append to
+     * @return
+     *          The number of bytes copied
+     */
+    public int drainTo(AbstractByteArray destination) {
+        return drainTo(destination, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Copies at most <code>max</code> published bytes the consumer has not drained yet to the write index of
+     * <code>destination</code>, and frees their space for the producers. Must only be called by one thread at a time.
+     * <br/>
+     * Limiting the number of bytes may stop in the middle of a record.
+     * @param destination
+     *          The byte array to append to
+     * @param max
+     *          The maximum number of bytes to copy
+     * @return
+     *          The number of bytes copied
+     */
+    public int drainTo(AbstractByteArray destination, int max) {
+        long start = consumed.get();
+        int count = (int) Math.min(published.get() - start, max);
+        if(count <= 0)
+            return 0;
+        int from = (int) start & mask;
+        int first = Math.min(count, data.length - from);
+        destination.putArray(data, from, first);
+        destination.putArray(data, 0, count - first);
+        // ordered store: the bytes are copied before producers can claim their space again
+        consumed.lazySet(start + count);
+        return count;
+    }
+
+    /**
+     * Returns the byte order used by the put methods
+     * @return
+     *          The byte order
+     */
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+    /**
+     * Returns the number of bytes this ConcurrentByteArray can hold before being drained
+     * @return
+     *          The capacity
+     */
+    public int capacity() {
+        return data.length;
+    }
+
+    /**
+     * Returns the position following the last published byte
+     * @return
+     *          The total number of bytes published since the creation of this ConcurrentByteArray
+     */
+    public long getPublishedPosition() {
+        return published.get();
+    }
+}
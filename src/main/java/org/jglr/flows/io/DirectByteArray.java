@@ -0,0 +1,146 @@
+package org.jglr.flows.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Represents a resizable and growable byte array stored in a direct {@link ByteBuffer}, that is outside of the Java heap.<br/>
+ * Large buffers kept in direct memory do not have to be scanned nor moved by the garbage collector, and can be handed
+ * to NIO channels without the intermediate copy the JDK makes for heap buffers.<br/>
+ * Growing a DirectByteArray allocates a new direct buffer; the memory of the previous one is released once it is
+ * garbage collected.
+ */
+public class DirectByteArray extends AbstractByteArray {
+
+    private ByteBuffer buffer;
+
+    /**
+     * Creates an empty DirectByteArray instance with a capacity equal to 0.
+     */
+    public DirectByteArray() {
+        this(0);
+    }
+
+    /**
+     * Creates an empty DirectByteArray instance with a given initial capacity.
+     * @param capacity
+     *          The initial capacity of the DirectByteArray
+     */
+    public DirectByteArray(int capacity) {
+        buffer = ByteBuffer.allocateDirect(capacity).order(byteOrder);
+    }
+
+    @Override
+    public void setByteOrder(ByteOrder order) {
+        super.setByteOrder(order);
+        buffer.order(order);
+    }
+
+    @Override
+    protected byte getByte(int index) {
+        return buffer.get(index);
+    }
+
+    @Override
+    protected void setByte(int index, byte b) {
+        buffer.put(index, b);
+    }
+
+    @Override
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    @Override
+    protected void reallocate(int newCapacity) {
+        ByteBuffer newBuffer = ByteBuffer.allocateDirect(newCapacity).order(byteOrder);
+        buffer.position(0);
+        buffer.limit(Math.min(newCapacity, buffer.capacity()));
+        newBuffer.put(buffer);
+        newBuffer.clear();
+        buffer = newBuffer;
+    }
+
+    @Override
+    protected void writeWord(int index, long value, int byteCount) {
+        switch (byteCount) {
+            case 2:
+                buffer.putShort(index, (short) value);
+                break;
+            case 4:
+                buffer.putInt(index, (int) value);
+                break;
+            case 8:
+                buffer.putLong(index, value);
+                break;
+            default:
+                super.writeWord(index, value, byteCount);
+        }
+    }
+
+    @Override
+    protected long readWord(int index, int byteCount) {
+        switch (byteCount) {
+            case 2:
+                return buffer.getShort(index) & 0xFFFFL;
+            case 4:
+                return buffer.getInt(index) & 0xFFFFFFFFL;
+            case 8:
+                return buffer.getLong(index);
+            default:
+                return super.readWord(index, byteCount);
+        }
+    }
+
+    @Override
+    protected void writeBytes(int index, byte[] src, int offset, int length) {
+        buffer.position(index);
+        buffer.put(src, offset, length);
+    }
+
+    @Override
+    protected void readBytes(int index, byte[] dst, int offset, int length) {
+        buffer.position(index);
+        buffer.get(dst, offset, length);
+    }
+
+    @Override
+    protected void copyTo(int index, AbstractByteArray dst, int dstIndex, int length) {
+        if(dst instanceof ByteArray) {
+            readBytes(index, ((ByteArray) dst).backingArray(), dstIndex, length);
+        } else if(dst instanceof DirectByteArray) {
+            ByteBuffer source = buffer.duplicate();
+            source.limit(index + length);
+            source.position(index);
+            ByteBuffer target = ((DirectByteArray) dst).buffer;
+            target.position(dstIndex);
+            target.put(source);
+        } else {
+            super.copyTo(index, dst, dstIndex, length);
+        }
+    }
+
+    @Override
+    protected ByteBuffer bufferView(int index, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(index + length);
+        view.position(index);
+        return view.slice();
+    }
+
+    @Override
+    ByteBuffer storageBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the direct buffer backing this DirectByteArray instance.<br/>
+     * Its capacity may be larger than {@link #length()}, and its position is used internally for bulk transfers: only
+     * rely on absolute accesses. Growing the DirectByteArray or calling {@link #trimToSize()} reallocates the buffer.
+     * @return
+     *        The backing buffer
+     */
+    public ByteBuffer backingBuffer() {
+        return buffer;
+    }
+}
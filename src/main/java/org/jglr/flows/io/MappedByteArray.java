@@ -0,0 +1,852 @@
+package org.jglr.flows.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Represents a growable byte array stored in a memory-mapped file, so that files larger than the heap (or larger than
+ * 2GB) can be read and patched in place.<br/>
+ * Offers the same API as {@link AbstractByteArray}, with <code>long</code> indexes. The file is mapped as a sequence of
+ * regions of {@link #getRegionSize()} bytes; words spanning over two regions are handled transparently.<br/>
+ * The file is never mapped past its end, so its length on disk is always the number of bytes written: bytes written
+ * past the end are first kept in memory, then appended to the file in chunks of up to {@link #MAX_TAIL_SIZE} bytes,
+ * remapping only its last region. Call {@link #force()} to make sure modifications, and the length of the file, are
+ * written to the storage device.<br/>
+ * Only the following subset of the {@link AbstractByteArray} API is supported: bytes, arrays, shorts, ints, unsigned
+ * ints, longs, floats and doubles, each at the cursors or at a given index, and the byte order. Strings, varints,
+ * searching, comparing, checksums and channel I/O are not.
+ */
+public class MappedByteArray implements Closeable {
+
+    /**
+     * Default size of a mapped region
+     */
+    public static final int DEFAULT_REGION_SIZE = 1 << 30;
+    /**
+     * Maximum number of bytes written past the end of the file which are kept in memory before being appended to it
+     */
+    public static final int MAX_TAIL_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final boolean readOnly;
+    private final int regionShift;
+    private final long regionMask;
+    private MappedByteBuffer[] regions;
+    private ByteOrder byteOrder;
+    /**
+     * Number of bytes mapped, which is also the length of the file on disk
+     */
+    private long mapped;
+    /**
+     * The bytes between <code>mapped</code> and <code>size</code>, not yet appended to the file
+     */
+    private byte[] tail;
+    private long size;
+    private long readCursor;
+    private long writeCursor;
+
+    /**
+     * Maps the given file for reading and writing, creating it if needed
+     * @param path
+     *          The file to map
+     * @throws IOException
+     *          If the file cannot be opened or mapped
+     */
+    public MappedByteArray(Path path) throws IOException {
+        this(path, false);
+    }
+
+    /**
+     * Maps the given file
+     * @param path
+     *          The file to map
+     * @param readOnly
+     *          If <code>true</code>, the file must exist and cannot be modified through this MappedByteArray. Otherwise it
+     *          is created if needed
+     * @throws IOException
+     *          If the file cannot be opened or mapped
+     */
+    public MappedByteArray(Path path, boolean readOnly) throws IOException {
+        this(path, readOnly, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Maps the given file
+     * @param path
+     *          The file to map
+     * @param readOnly
+     *          If <code>true</code>, the file must exist and cannot be modified through this MappedByteArray. Otherwise it
+     *          is created if needed
+     * @param regionSize
+     *          The size of each mapped region, must be a power of two
+     * @throws IOException
+     *          If the file cannot be opened or mapped
+     */
+    public MappedByteArray(Path path, boolean readOnly, int regionSize) throws IOException {
+        if(regionSize <= 0 || Integer.bitCount(regionSize) != 1)
+            throw new IllegalArgumentException("Region size must be a power of two, got "+regionSize);
+        this.readOnly = readOnly;
+        this.regionShift = Integer.numberOfTrailingZeros(regionSize);
+        this.regionMask = regionSize - 1L;
+        if(readOnly) {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } else {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        }
+        byteOrder = ByteOrder.nativeOrder();
+        regions = new MappedByteBuffer[0];
+        tail = new byte[0];
+        size = channel.size();
+        writeCursor = size;
+        map(size);
+    }
+
+    /**
+     * Maps the file up to its length, <code>newLength</code>, remapping the last region if it was partial
+     * @param newLength
+     *          The new length of the file, at least the mapped one
+     * @throws IOException
+     *          If the file cannot be mapped
+     */
+    private void map(long newLength) throws IOException {
+        long regionSize = regionMask + 1;
+        int count = (int) ((newLength + regionMask) >>> regionShift);
+        int first = regions.length;
+        if(first > 0 && regions[first - 1].capacity() < regionSize) {
+            first--;
+        }
+        regions = Arrays.copyOf(regions, count);
+        FileChannel.MapMode mode = readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+        for (int i = first; i < count; i++) {
+            long start = (long) i << regionShift;
+            MappedByteBuffer region = channel.map(mode, start, Math.min(regionSize, newLength - start));
+            region.order(byteOrder);
+            regions[i] = region;
+        }
+        mapped = newLength;
+    }
+
+    /**
+     * Makes sure <code>count</code> bytes can be written at <code>index</code>. Bytes past the end of the file go to
+     * the tail, which grows geometrically until {@link #MAX_TAIL_SIZE}; it is then appended to the file.
+     * @throws IOException
+     *          If the file cannot be grown or mapped
+     */
+    private void reserve(long index, int count) throws IOException {
+        if(index < 0)
+            throw new IndexOutOfBoundsException("Size: "+size+", index: "+index+", count: "+count);
+        long end = index + count;
+        if(end <= size)
+            return;
+        if(readOnly)
+            throw new ReadOnlyBufferException();
+        if(end - mapped > MAX_TAIL_SIZE) {
+            flush();
+        }
+        if(end - mapped > MAX_TAIL_SIZE) {
+            // far past the end of the file, the bytes in between are part of the content anyway
+            map(end);
+        } else if(end - mapped > tail.length) {
+            int newLength = (int) Math.min(MAX_TAIL_SIZE, Math.max(end - mapped, Math.max(16L, tail.length * 2L)));
+            tail = Arrays.copyOf(tail, newLength);
+        }
+        size = end;
+    }
+
+    /**
+     * Appends the tail to the file and maps it
+     * @throws IOException
+     *          If the file cannot be written or mapped
+     */
+    private void flush() throws IOException {
+        int length = (int) (size - mapped);
+        if(length <= 0)
+            return;
+        ByteBuffer buffer = ByteBuffer.wrap(tail, 0, length);
+        while(buffer.hasRemaining()) {
+            channel.write(buffer, mapped + buffer.position());
+        }
+        map(size);
+        // bytes skipped over by later writes must read as zeros
+        Arrays.fill(tail, 0, length, (byte) 0);
+    }
+
+    private void checkReadable(long index, long count) {
+        if(index < 0 || count < 0 || index + count > size)
+            throw new IndexOutOfBoundsException("Size: "+size+", index: "+index+", count: "+count);
+    }
+
+    private byte getByte(long index) {
+        if(index >= mapped)
+            return tail[(int) (index - mapped)];
+        return region(index).get(local(index));
+    }
+
+    private void setByte(long index, byte b) {
+        if(index >= mapped) {
+            tail[(int) (index - mapped)] = b;
+        } else {
+            region(index).put(local(index), b);
+        }
+    }
+
+    private MappedByteBuffer region(long index) {
+        return regions[(int) (index >>> regionShift)];
+    }
+
+    private int local(long index) {
+        return (int) (index & regionMask);
+    }
+
+    private void writeWord(long index, long value, int byteCount) {
+        if(index + byteCount <= mapped && local(index) + byteCount <= region(index).capacity()) {
+            MappedByteBuffer region = region(index);
+            int local = local(index);
+            switch (byteCount) {
+                case 2:
+                    region.putShort(local, (short) value);
+                    return;
+                case 4:
+                    region.putInt(local, (int) value);
+                    return;
+                case 8:
+                    region.putLong(local, value);
+                    return;
+            }
+        }
+        // spans over two regions, or over the tail
+        for (int i = 0; i < byteCount; i++) {
+            int shift = byteOrder == ByteOrder.BIG_ENDIAN ? 8*(byteCount-i-1) : 8*i;
+            setByte(index + i, (byte) (value >>> shift));
+        }
+    }
+
+    private long readWord(long index, int byteCount) {
+        if(index + byteCount <= mapped && local(index) + byteCount <= region(index).capacity()) {
+            MappedByteBuffer region = region(index);
+            int local = local(index);
+            switch (byteCount) {
+                case 2:
+                    return region.getShort(local) & 0xFFFFL;
+                case 4:
+                    return region.getInt(local) & 0xFFFFFFFFL;
+                case 8:
+                    return region.getLong(local);
+            }
+        }
+        // spans over two regions, or over the tail
+        long value = 0L;
+        for (int i = 0; i < byteCount; i++) {
+            int shift = byteOrder == ByteOrder.BIG_ENDIAN ? 8*(byteCount-i-1) : 8*i;
+            value |= (getByte(index + i) & 0xFFL) << shift;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the current ByteOrder.
+     * @return
+     *      The current ByteOrder
+     */
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+    /**
+     * Changes the current ByteOrder.<br/>
+     * Note that changing it after writing a word (eg a long, an int, or an unsigned int) does not change the encoding of said word.
+     * @param order
+     *        The new ByteOrder
+     */
+    public void setByteOrder(ByteOrder order) {
+        this.byteOrder = order;
+        for (MappedByteBuffer region : regions) {
+            region.order(order);
+        }
+    }
+
+    /**
+     * Sets the byte at the current write index and grows the file if needed.<br/>
+     * Increments the write index by 1.
+     * @param b
+     *          The byte to set
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void put(byte b) throws IOException {
+        put(b, writeCursor);
+        writeCursor++;
+    }
+
+    /**
+     * Write a single signed short, respecting the current byte order.<br/>
+     * Increments the write index by 2.
+     * @param s
+     *          The short to write
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void putShort(short s) throws IOException {
+        putShort(s, writeCursor);
+        writeCursor += 2;
+    }
+
+    /**
+     * Write a single signed integer, respecting the current byte order.<br/>
+     * Increments the write index by 4.
+     * @param i
+     *          The integer to write
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void putInt(int i) throws IOException {
+        putInt(i, writeCursor);
+        writeCursor += 4;
+    }
+
+    /**
+     * Write a single signed long, respecting the current byte order.<br/>
+     * Increments the write index by 8.
+     * @param l
+     *          The long to write
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void putLong(long l) throws IOException {
+        putLong(l, writeCursor);
+        writeCursor += 8;
+    }
+
+    /**
+     * Write a single unsigned integer, respecting the current byte order.<br/>
+     * Increments the write index by 4.
+     * @param i
+     *          The unsigned integer to write
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void putUnsignedInt(long i) throws IOException {
+        putUnsignedInt(i, writeCursor);
+        writeCursor += 4;
+    }
+
+    /**
+     * Write a single float, respecting the current byte order.<br/>
+     * Increments the write index by 4.
+     * @param f
+     *          The float to write
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void putFloat(float f) throws IOException {
+        putInt(Float.floatToRawIntBits(f));
+    }
+
+    /**
+     * Write a single double, respecting the current byte order.<br/>
+     * Increments the write index by 8.
+     * @param d
+     *          The double to write
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void putDouble(double d) throws IOException {
+        putLong(Double.doubleToRawLongBits(d));
+    }
+
+    /**
+     * Writes the content of the given array at the write index.<br/>
+     * Increments the write index by <code>bytes.length</code>
+     * @param bytes
+     *          The bytes to write
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void putArray(byte[] bytes) throws IOException {
+        putArray(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes <code>length</code> bytes of the given array, starting at <code>offset</code>, at the write index.<br/>
+     * Increments the write index by <code>length</code>
+     * @param data
+     *          The bytes to write
+     * @param offset
+     *          The index of the first byte to write in <code>data</code>
+     * @param length
+     *          The number of bytes to write
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void putArray(byte[] data, int offset, int length) throws IOException {
+        putArray(data, offset, length, writeCursor);
+        writeCursor += length;
+    }
+
+    /**
+     * Writes <code>length</code> bytes of the given array, starting at <code>offset</code>, at the given index
+     * @param data
+     *          The bytes to write
+     * @param offset
+     *          The index of the first byte to write in <code>data</code>
+     * @param length
+     *          The number of bytes to write
+     * @param index
+     *          The index
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void putArray(byte[] data, int offset, int length, long index) throws IOException {
+        if(offset < 0 || length < 0 || offset + length > data.length)
+            throw new IndexOutOfBoundsException("Size: "+data.length+", offset: "+offset+", length: "+length);
+        reserve(index, length);
+        while(length > 0 && index < mapped) {
+            MappedByteBuffer region = region(index);
+            int local = local(index);
+            int chunk = Math.min(length, region.capacity() - local);
+            region.position(local);
+            region.put(data, offset, chunk);
+            index += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+        if(length > 0) {
+            System.arraycopy(data, offset, tail, (int) (index - mapped), length);
+        }
+    }
+
+    /**
+     * Sets the byte at the given index, growing the file if needed
+     * @param b
+     *          The byte to set
+     * @param index
+     *          The index
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void put(byte b, long index) throws IOException {
+        reserve(index, 1);
+        setByte(index, b);
+    }
+
+    /**
+     * Write a single signed short at the given index, respecting the current byte order.
+     * @param s
+     *          The short to write
+     * @param index
+     *          The index
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void putShort(short s, long index) throws IOException {
+        reserve(index, 2);
+        writeWord(index, s, 2);
+    }
+
+    /**
+     * Write a single signed integer at the given index, respecting the current byte order.
+     * @param i
+     *          The integer to write
+     * @param index
+     *          The index
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void putInt(int i, long index) throws IOException {
+        reserve(index, 4);
+        writeWord(index, i, 4);
+    }
+
+    /**
+     * Write a single signed long at the given index, respecting the current byte order.
+     * @param l
+     *          The long to write
+     * @param index
+     *          The index
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void putLong(long l, long index) throws IOException {
+        reserve(index, 8);
+        writeWord(index, l, 8);
+    }
+
+    /**
+     * Write a single unsigned integer at the given index, respecting the current byte order.
+     * @param i
+     *          The unsigned integer to write
+     * @param index
+     *          The index
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void putUnsignedInt(long i, long index) throws IOException {
+        reserve(index, 4);
+        writeWord(index, i, 4);
+    }
+
+    /**
+     * Write a single float at the given index, respecting the current byte order.
+     * @param f
+     *          The float to write
+     * @param index
+     *          The index
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void putFloat(float f, long index) throws IOException {
+        putInt(Float.floatToRawIntBits(f), index);
+    }
+
+    /**
+     * Write a single double at the given index, respecting the current byte order.
+     * @param d
+     *          The double to write
+     * @param index
+     *          The index
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void putDouble(double d, long index) throws IOException {
+        putLong(Double.doubleToRawLongBits(d), index);
+    }
+
+    /**
+     * Writes the content of the given array at the given index
+     * @param bytes
+     *          The bytes to write
+     * @param index
+     *          The index
+     * @throws IOException
+     *          If the file cannot be grown
+     */
+    public void putArray(byte[] bytes, long index) throws IOException {
+        putArray(bytes, 0, bytes.length, index);
+    }
+
+    /**
+     * Returns the byte at the current read index.<br/>
+     * Increments the read index by 1.
+     * @return
+     *      The byte at the read index
+     */
+    public byte get() {
+        byte result = get(readCursor);
+        readCursor++;
+        return result;
+    }
+
+    /**
+     * Reads a single signed short at the current read index, respecting the current byte order.<br/>
+     * Increments the read index by 2.
+     * @return
+     *      The short at the read index
+     */
+    public short getShort() {
+        short result = getShort(readCursor);
+        readCursor += 2;
+        return result;
+    }
+
+    /**
+     * Reads a single signed integer at the current read index, respecting the current byte order.<br/>
+     * Increments the read index by 4.
+     * @return
+     *      The integer at the read index
+     */
+    public int getInt() {
+        int result = getInt(readCursor);
+        readCursor += 4;
+        return result;
+    }
+
+    /**
+     * Reads a single unsigned integer at the current read index, respecting the current byte order.<br/>
+     * Increments the read index by 4.
+     * @return
+     *      The unsigned integer at the read index
+     */
+    public long getUnsignedInt() {
+        long result = getUnsignedInt(readCursor);
+        readCursor += 4;
+        return result;
+    }
+
+    /**
+     * Reads a single signed long at the current read index, respecting the current byte order.<br/>
+     * Increments the read index by 8.
+     * @return
+     *      The long at the read index
+     */
+    public long getLong() {
+        long result = getLong(readCursor);
+        readCursor += 8;
+        return result;
+    }
+
+    /**
+     * Reads a single float at the current read index, respecting the current byte order.<br/>
+     * Increments the read index by 4.
+     * @return
+     *      The float at the read index
+     */
+    public float getFloat() {
+        return Float.intBitsToFloat(getInt());
+    }
+
+    /**
+     * Reads a single double at the current read index, respecting the current byte order.<br/>
+     * Increments the read index by 8.
+     * @return
+     *      The double at the read index
+     */
+    public double getDouble() {
+        return Double.longBitsToDouble(getLong());
+    }
+
+    /**
+     * Copies <code>length</code> bytes starting at the current read index into the given array.<br/>
+     * Increments the read index by <code>length</code>
+     * @param dst
+     *          The array to copy to
+     * @param offset
+     *          The index in <code>dst</code> of the first byte to copy
+     * @param length
+     *          The number of bytes to copy
+     */
+    public void getArray(byte[] dst, int offset, int length) {
+        getArray(dst, offset, length, readCursor);
+        readCursor += length;
+    }
+
+    /**
+     * Copies <code>length</code> bytes starting at the given index into the given array.
+     * @param dst
+     *          The array to copy to
+     * @param offset
+     *          The index in <code>dst</code> of the first byte to copy
+     * @param length
+     *          The number of bytes to copy
+     * @param index
+     *          The index of the first byte to copy
+     */
+    public void getArray(byte[] dst, int offset, int length, long index) {
+        if(offset < 0 || length < 0 || offset + length > dst.length)
+            throw new IndexOutOfBoundsException("Size: "+dst.length+", offset: "+offset+", length: "+length);
+        checkReadable(index, length);
+        while(length > 0 && index < mapped) {
+            MappedByteBuffer region = region(index);
+            int local = local(index);
+            int chunk = Math.min(length, region.capacity() - local);
+            region.position(local);
+            region.get(dst, offset, chunk);
+            index += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+        if(length > 0) {
+            System.arraycopy(tail, (int) (index - mapped), dst, offset, length);
+        }
+    }
+
+    /**
+     * Returns the byte at the given index
+     * @param index
+     *          The index
+     * @return
+     *      The byte at the given index
+     */
+    public byte get(long index) {
+        checkReadable(index, 1);
+        return getByte(index);
+    }
+
+    /**
+     * Reads a single signed short at the given index, respecting the current byte order.
+     * @param index
+     *          The index
+     * @return
+     *      The short at the given index
+     */
+    public short getShort(long index) {
+        checkReadable(index, 2);
+        return (short) readWord(index, 2);
+    }
+
+    /**
+     * Reads a single signed integer at the given index, respecting the current byte order.
+     * @param index
+     *          The index
+     * @return
+     *      The integer at the given index
+     */
+    public int getInt(long index) {
+        checkReadable(index, 4);
+        return (int) readWord(index, 4);
+    }
+
+    /**
+     * Reads a single unsigned integer at the given index, respecting the current byte order.
+     * @param index
+     *          The index
+     * @return
+     *      The unsigned integer at the given index
+     */
+    public long getUnsignedInt(long index) {
+        checkReadable(index, 4);
+        return readWord(index, 4);
+    }
+
+    /**
+     * Reads a single signed long at the given index, respecting the current byte order.
+     * @param index
+     *          The index
+     * @return
+     *      The long at the given index
+     */
+    public long getLong(long index) {
+        checkReadable(index, 8);
+        return readWord(index, 8);
+    }
+
+    /**
+     * Reads a single float at the given index, respecting the current byte order.
+     * @param index
+     *          The index
+     * @return
+     *      The float at the given index
+     */
+    public float getFloat(long index) {
+        return Float.intBitsToFloat(getInt(index));
+    }
+
+    /**
+     * Reads a single double at the given index, respecting the current byte order.
+     * @param index
+     *          The index
+     * @return
+     *      The double at the given index
+     */
+    public double getDouble(long index) {
+        return Double.longBitsToDouble(getLong(index));
+    }
+
+    /**
+     * Returns the current length of the content, including the bytes not yet appended to the file
+     * @return
+     *          The current length
+     */
+    public long length() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes currently mapped, which is the length of the file
+     * @return
+     *          The number of bytes mapped
+     */
+    public long mappedLength() {
+        return mapped;
+    }
+
+    /**
+     * Returns the size of each mapped region
+     * @return
+     *          The region size
+     */
+    public int getRegionSize() {
+        return (int) (regionMask + 1);
+    }
+
+    /**
+     * Returns whether the file was mapped read-only
+     * @return
+     *          <code>true</code> if writing is forbidden
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Returns the value of the read index
+     * @return
+     *          The value of the read index
+     */
+    public long getReadCursor() {
+        return readCursor;
+    }
+
+    /**
+     * Set the value of the read index
+     * @param readCursor
+     *          The value of the read index
+     */
+    public void setReadCursor(long readCursor) {
+        this.readCursor = readCursor;
+    }
+
+    /**
+     * Returns the value of the write index
+     * @return
+     *          The value of the write index
+     */
+    public long getWriteCursor() {
+        return writeCursor;
+    }
+
+    /**
+     * Set the value of the write index
+     * @param writeCursor
+     *          The value of the write index
+     */
+    public void setWriteCursor(long writeCursor) {
+        this.writeCursor = writeCursor;
+    }
+
+    /**
+     * Reset read and write indexes to 0
+     */
+    public void reset() {
+        readCursor = 0;
+        writeCursor = 0;
+    }
+
+    /**
+     * Appends the bytes kept in memory to the file, then forces the modifications made to the mapped regions and the
+     * length of the file to be written to the storage device
+     * @throws IOException
+     *          If the file cannot be written
+     */
+    public void force() throws IOException {
+        if(readOnly)
+            return;
+        flush();
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+        channel.force(true);
+    }
+
+    /**
+     * Forces pending modifications and closes the file. Since the file is never mapped past its end, nothing needs to
+     * be truncated. The MappedByteArray must not be used afterwards.
+     * @throws IOException
+     *          If the file cannot be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        regions = new MappedByteBuffer[0];
+        tail = new byte[0];
+        mapped = 0;
+        channel.close();
+    }
+}
@@ -0,0 +1,207 @@
+package org.jglr.flows.io;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Represents a byte array used as a streaming buffer: the bytes before the read index are discarded, and the space
+ * they used is reused by the next writes, wrapping around the end of the backing <code>byte[]</code>.<br/>
+ * As long as the consumer keeps up with the producer, a RingByteArray never grows nor reallocates. When the
+ * readable bytes do not leave enough room for a write, the storage grows to the next power of two following the
+ * growth factor; use {@link #setMaxCapacity(int)} to forbid it.<br/>
+ * The capacity is always a power of two. Once the read index passes the capacity, both indexes are moved back by
+ * a multiple of the capacity on the next write, so indexed accesses should be made relative to
+ * {@link #getReadCursor()}. Bytes before the read index must be considered lost.
+ */
+public class RingByteArray extends AbstractByteArray {
+
+    /**
+     * Largest power of two an array can hold
+     */
+    private static final int MAXIMUM_RING_CAPACITY = 1 << 30;
+
+    private byte[] data;
+    private int mask;
+
+    /**
+     * Creates an empty RingByteArray instance with a capacity of 16 bytes.
+     */
+    public RingByteArray() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty RingByteArray instance with a given initial capacity.
+     * @param capacity
+     *          The initial capacity of the RingByteArray, rounded up to a power of two
+     */
+    public RingByteArray(int capacity) {
+        if(capacity < 0)
+            throw new IllegalArgumentException("Capacity cannot be negative: "+capacity);
+        data = new byte[ringCapacity(capacity)];
+        mask = data.length - 1;
+    }
+
+    private static int ringCapacity(int capacity) {
+        if(capacity > MAXIMUM_RING_CAPACITY)
+            throw new IllegalStateException("A RingByteArray cannot hold more than "+MAXIMUM_RING_CAPACITY+" bytes, requested "+capacity);
+        return capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    @Override
+    protected byte getByte(int index) {
+        return data[index & mask];
+    }
+
+    @Override
+    protected void setByte(int index, byte b) {
+        data[index & mask] = b;
+    }
+
+    @Override
+    public int capacity() {
+        return data.length;
+    }
+
+    /**
+     * Grows the ring to the next power of two following the growth factor (twice the capacity by default), or to the
+     * power of two covering <code>minCapacity</code> if it is larger. Never goes past the maximum capacity.
+     */
+    @Override
+    public void ensureCapacity(int minCapacity) {
+        if(minCapacity <= data.length)
+            return;
+        int maxCapacity = Integer.highestOneBit(Math.min(getMaxCapacity(), MAXIMUM_RING_CAPACITY));
+        if(minCapacity > maxCapacity)
+            throw new IllegalStateException("Cannot grow "+getClass().getSimpleName()+" to "+minCapacity+" bytes, maximum capacity is "+maxCapacity);
+        long grown = (long) (data.length * (double) getGrowthFactor());
+        int newCapacity = ringCapacity((int) Math.max(minCapacity, Math.min(grown, maxCapacity)));
+        reallocate(newCapacity);
+    }
+
+    /**
+     * Changes the capacity this ring cannot grow past, rounded down to a power of two
+     * @param maxCapacity
+     *          The new maximum capacity, cannot be lower than the current capacity once rounded down
+     */
+    @Override
+    public void setMaxCapacity(int maxCapacity) {
+        super.setMaxCapacity(Integer.highestOneBit(maxCapacity));
+    }
+
+    @Override
+    public int writableBytes() {
+        return data.length - readableBytes();
+    }
+
+    @Override
+    void reserve(int index, int count) {
+        int end = index + count;
+        if(index < readCursor || end < 0)
+            throw new IndexOutOfBoundsException("Cannot write before the read index of a ring. Read index: "+readCursor+", index: "+index+", count: "+count);
+        if(end - readCursor > data.length)
+            ensureCapacity(end - readCursor);
+        if(end > size)
+            size = end;
+        wrapIndexes();
+    }
+
+    @Override
+    void ensureWritable(int count) {
+        ensureCapacity(writeCursor - readCursor + count);
+    }
+
+    /**
+     * Moves the indexes back by a multiple of the capacity once the read index has passed it, so that they never
+     * overflow. Indexes still point to the same bytes afterwards, as only their position modulo the capacity matters.
+     */
+    private void wrapIndexes() {
+        if(readCursor >= data.length) {
+            int shift = readCursor & ~mask;
+            readCursor -= shift;
+            writeCursor -= shift;
+            size -= shift;
+        }
+    }
+
+    /**
+     * Moves the indexes back as close to 0 as possible. The readable bytes are never moved: they are already at the
+     * start of the ring.
+     */
+    @Override
+    public void compact() {
+        wrapIndexes();
+    }
+
+    @Override
+    public void trimToSize() {
+        if(data.length > size - readCursor)
+            reallocate(size - readCursor);
+    }
+
+    /**
+     * Copies the bytes from the read index to the end into a new ring, keeping every one of them at the same index
+     * @param newCapacity
+     *          The number of bytes the new ring must be able to hold from the read index, rounded up to a power of two
+     */
+    @Override
+    protected void reallocate(int newCapacity) {
+        byte[] newData = new byte[ringCapacity(Math.min(newCapacity, MAXIMUM_RING_CAPACITY))];
+        int newMask = newData.length - 1;
+        int index = readCursor;
+        int end = Math.min(size, readCursor + newData.length);
+        while(index < end) {
+            int from = index & mask;
+            int to = index & newMask;
+            int chunk = Math.min(end - index, Math.min(data.length - from, newData.length - to));
+            System.arraycopy(data, from, newData, to, chunk);
+            index += chunk;
+        }
+        data = newData;
+        mask = newMask;
+    }
+
+    @Override
+    protected void writeBytes(int index, byte[] src, int offset, int length) {
+        int start = index & mask;
+        int first = Math.min(length, data.length - start);
+        System.arraycopy(src, offset, data, start, first);
+        System.arraycopy(src, offset + first, data, 0, length - first);
+    }
+
+    @Override
+    protected void readBytes(int index, byte[] dst, int offset, int length) {
+        int start = index & mask;
+        int first = Math.min(length, data.length - start);
+        System.arraycopy(data, start, dst, offset, first);
+        System.arraycopy(data, 0, dst, offset + first, length - first);
+    }
+
+    @Override
+    protected void copyTo(int index, AbstractByteArray dst, int dstIndex, int length) {
+        int start = index & mask;
+        int first = Math.min(length, data.length - start);
+        dst.writeBytes(dstIndex, data, start, first);
+        dst.writeBytes(dstIndex + first, data, 0, length - first);
+    }
+
+    @Override
+    protected ByteBuffer bufferView(int index, int length) {
+        int start = index & mask;
+        if(start + length <= data.length) {
+            return ByteBuffer.wrap(data, start, length).slice();
+        }
+        // wraps around the end of the ring, asByteBuffers() avoids this copy
+        return super.bufferView(index, length);
+    }
+
+    @Override
+    void collectBuffers(int index, int length, List<ByteBuffer> buffers) {
+        int start = index & mask;
+        int first = Math.min(length, data.length - start);
+        buffers.add(ByteBuffer.wrap(data, start, first).slice());
+        if(first < length) {
+            buffers.add(ByteBuffer.wrap(data, 0, length - first).slice());
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.jglr.flows.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Checksum;
+
+/**
+ * Incremental implementation of the 64-bit xxHash algorithm, a fast non-cryptographic hash function.<br/>
+ * Feeding the same bytes in several calls to <code>update</code> gives the same value as hashing them at once with
+ * {@link #hash(byte[], int, int, long)}. {@link #getValue()} returns all 64 bits of the hash.
+ */
+public final class XXHash64 implements Checksum {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    /**
+     * Number of bytes consumed by each round of the main loop
+     */
+    private static final int STRIPE = 32;
+
+    private final long seed;
+    private final byte[] pending = new byte[STRIPE];
+    private final ByteBuffer pendingView = ByteBuffer.wrap(pending).order(ByteOrder.LITTLE_ENDIAN);
+    private int pendingCount;
+    private long totalLength;
+    private long v1, v2, v3, v4;
+
+    /**
+     * Creates a new XXHash64 instance with a seed of 0
+     */
+    public XXHash64() {
+        this(0L);
+    }
+
+    /**
+     * Creates a new XXHash64 instance
+     * @param seed
+     *          The seed of the hash
+     */
+    public XXHash64(long seed) {
+        this.seed = seed;
+        reset();
+    }
+
+    /**
+     * Hashes bytes of an array at once
+     * @param bytes
+     *          The array to hash
+     * @param offset
+     *          The index of the first byte to hash
+     * @param length
+     *          The number of bytes to hash
+     * @param seed
+     *          The seed of the hash
+     * @return
+     *          The 64-bit hash
+     */
+    public static long hash(byte[] bytes, int offset, int length, long seed) {
+        if(offset < 0 || length < 0 || offset + length > bytes.length)
+            throw new IndexOutOfBoundsException("Size: "+bytes.length+", offset: "+offset+", length: "+length);
+        return hash(ByteBuffer.wrap(bytes), offset, length, seed);
+    }
+
+    /**
+     * Hashes bytes of a buffer at once, using absolute indexes: the position, limit and byte order of the buffer are
+     * ignored
+     */
+    static long hash(ByteBuffer buffer, int index, int length, long seed) {
+        int end = index + length;
+        long hash;
+        if(length >= STRIPE) {
+            long v1 = seed + PRIME1 + PRIME2;
+            long v2 = seed + PRIME2;
+            long v3 = seed;
+            long v4 = seed - PRIME1;
+            boolean little = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+            for (; index + STRIPE <= end; index += STRIPE) {
+                v1 = round(v1, readLong(buffer, index, little));
+                v2 = round(v2, readLong(buffer, index + 8, little));
+                v3 = round(v3, readLong(buffer, index + 16, little));
+                v4 = round(v4, readLong(buffer, index + 24, little));
+            }
+            hash = merge(v1, v2, v3, v4);
+        } else {
+            hash = seed + PRIME5;
+        }
+        return finish(hash + length, buffer, index, end - index);
+    }
+
+    @Override
+    public void update(int b) {
+        pending[pendingCount++] = (byte) b;
+        totalLength++;
+        if(pendingCount == STRIPE) {
+            consumeStripe(pendingView, 0);
+            pendingCount = 0;
+        }
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        if(offset < 0 || length < 0 || offset + length > bytes.length)
+            throw new IndexOutOfBoundsException("Size: "+bytes.length+", offset: "+offset+", length: "+length);
+        update(ByteBuffer.wrap(bytes), offset, length);
+    }
+
+    /**
+     * Updates the hash with the remaining bytes of the given buffer, and moves its position to its limit
+     * @param buffer
+     *          The bytes to hash
+     */
+    public void update(ByteBuffer buffer) {
+        update(buffer, buffer.position(), buffer.remaining());
+        buffer.position(buffer.limit());
+    }
+
+    private void update(ByteBuffer buffer, int index, int length) {
+        totalLength += length;
+        if(pendingCount + length < STRIPE) {
+            copyToPending(buffer, index, length);
+            return;
+        }
+        if(pendingCount > 0) {
+            int fill = STRIPE - pendingCount;
+            copyToPending(buffer, index, fill);
+            consumeStripe(pendingView, 0);
+            pendingCount = 0;
+            index += fill;
+            length -= fill;
+        }
+        for (; length >= STRIPE; index += STRIPE, length -= STRIPE) {
+            consumeStripe(buffer, index);
+        }
+        copyToPending(buffer, index, length);
+    }
+
+    private void copyToPending(ByteBuffer buffer, int index, int length) {
+        for (int i = 0; i < length; i++) {
+            pending[pendingCount++] = buffer.get(index + i);
+        }
+    }
+
+    private void consumeStripe(ByteBuffer buffer, int index) {
+        boolean little = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+        v1 = round(v1, readLong(buffer, index, little));
+        v2 = round(v2, readLong(buffer, index + 8, little));
+        v3 = round(v3, readLong(buffer, index + 16, little));
+        v4 = round(v4, readLong(buffer, index + 24, little));
+    }
+
+    /**
+     * Returns the 64-bit hash of all the bytes given since the creation of this instance or the last reset
+     * @return
+     *          The current hash
+     */
+    @Override
+    public long getValue() {
+        long hash = totalLength >= STRIPE ? merge(v1, v2, v3, v4) : seed + PRIME5;
+        return finish(hash + totalLength, pendingView, 0, pendingCount);
+    }
+
+    @Override
+    public void reset() {
+        v1 = seed + PRIME1 + PRIME2;
+        v2 = seed + PRIME2;
+        v3 = seed;
+        v4 = seed - PRIME1;
+        pendingCount = 0;
+        totalLength = 0;
+    }
+
+    private static long readLong(ByteBuffer buffer, int index, boolean little) {
+        long value = buffer.getLong(index);
+        return little ? value : Long.reverseBytes(value);
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME1 + PRIME4;
+    }
+
+    private static long merge(long v1, long v2, long v3, long v4) {
+        long hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+        hash = mergeRound(hash, v1);
+        hash = mergeRound(hash, v2);
+        hash = mergeRound(hash, v3);
+        return mergeRound(hash, v4);
+    }
+
+    /**
+     * Mixes the last bytes (less than a stripe) into the hash, then mixes its bits
+     */
+    private static long finish(long hash, ByteBuffer buffer, int index, int length) {
+        boolean little = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+        int end = index + length;
+        for (; index + 8 <= end; index += 8) {
+            hash ^= round(0, readLong(buffer, index, little));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        if(index + 4 <= end) {
+            int value = buffer.getInt(index);
+            hash ^= ((little ? value : Integer.reverseBytes(value)) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            index += 4;
+        }
+        for (; index < end; index++) {
+            hash ^= (buffer.get(index) & 0xFFL) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+        }
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+}
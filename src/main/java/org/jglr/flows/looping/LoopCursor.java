@@ -0,0 +1,136 @@
+package org.jglr.flows.looping;
+
+import org.jglr.flows.looping.defaults.DoStreamLoop;
+
+import java.io.IOException;
+
+/**
+ * The position of a reader going through a source following a {@link StreamLoop}, and the decisions taken at the loop
+ * boundaries: when to notify the loop, when to go back to its start and when to end.<br/>
+ * Shared by {@link LoopingInputStream} and {@link LoopingFileChannel}, which move their source in the hooks.
+ */
+abstract class LoopCursor {
+
+    final StreamLoop mainLoop;
+    StreamLoop currentLoop;
+    /**
+     * Position of the next byte to read
+     */
+    long position;
+    /**
+     * Position the loop goes back to at the end of an iteration
+     */
+    long loopStart;
+    /**
+     * Whether the bytes being read belong to the body of the current loop
+     */
+    private boolean insideLoop;
+
+    LoopCursor() {
+        mainLoop = currentLoop = new DoStreamLoop(0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Updates the loop state before reading from the current position, notifying the loop when its start is reached
+     * @return
+     *          The number of bytes that can be read before the next loop boundary, or -1 if the content must end here
+     */
+    long beforeRead() {
+        long end = currentLoop.getEndPosition();
+        long run;
+        if(currentLoop.shouldContinue(position)) {
+            long start = currentLoop.getStartPosition();
+            if(start == position) {
+                onBodyStart(end - start);
+                currentLoop.onLoopStart();
+                loopStart = position;
+            }
+            insideLoop = true;
+            if(start > position) {
+                run = start - position;
+            } else {
+                run = end > position ? end - position : Long.MAX_VALUE;
+            }
+        } else {
+            if(currentLoop.shouldSkipToEnd(position))
+                return -1;
+            insideLoop = false;
+            if(end == Long.MAX_VALUE) {
+                // switches back to the main loop after this byte
+                run = 1;
+            } else {
+                run = end > position ? end - position : Long.MAX_VALUE;
+            }
+        }
+        return currentLoop.isCheckedOnEveryByte() ? 1 : run;
+    }
+
+    /**
+     * Updates the loop state after <code>count</code> bytes have been read, going back to the start of the loop if its
+     * end is reached and it should continue
+     */
+    void afterRead(long count) throws IOException {
+        position += count;
+        long end = currentLoop.getEndPosition();
+        if(insideLoop) {
+            if(end == position) {
+                currentLoop.onLoopEnd();
+                if(currentLoop.shouldContinue(position)) {
+                    rewind();
+                } else if(!currentLoop.shouldSkipToEnd(position)) {
+                    switchToMainLoop();
+                }
+            }
+        } else if(end == Long.MAX_VALUE || end == position) {
+            switchToMainLoop();
+        }
+    }
+
+    /**
+     * Called when the source reaches its end
+     * @param in
+     *          The stream given to {@link StreamLoop#continueOnEOFReached(long, LoopingInputStream)}
+     * @return
+     *          <code>true</code> if the loop went back to its start and reading can go on
+     */
+    boolean restartOnEOF(LoopingInputStream in) throws IOException {
+        if(currentLoop.continueOnEOFReached(position, in)) {
+            currentLoop.onLoopEnd();
+            // an empty loop body would restart forever
+            if(currentLoop.shouldContinue(position) && position != loopStart) {
+                rewind();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void rewind() throws IOException {
+        onRewind();
+        position = loopStart;
+    }
+
+    private void switchToMainLoop() {
+        currentLoop = mainLoop;
+        onMainLoop();
+    }
+
+    /**
+     * Called when the start of the body of the current loop is reached, before {@link #loopStart} is updated
+     * @param length
+     *          The length of the body, or a huge value if it ends with the source
+     */
+    void onBodyStart(long length) {
+    }
+
+    /**
+     * Called when the loop goes back to {@link #loopStart}, before {@link #position} is moved there
+     */
+    abstract void onRewind() throws IOException;
+
+    /**
+     * Called when the current loop is done and the main loop takes over
+     */
+    void onMainLoop() {
+    }
+}
@@ -0,0 +1,248 @@
+package org.jglr.flows.looping;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A <code>LoopPlan</code> describes a whole sequence of parts of a source to play, some of them looped, possibly inside
+ * each other. For instance, an intro, a chorus repeated 4 times, a bridge looped while a condition holds, then an outro:
+ * <pre>
+ * LoopPlan plan = LoopPlan.builder()
+ *         .play(0, intro)
+ *         .loop(new RepeatStreamLoop(intro, bridge, 4, false))
+ *         .loop(new WhileStreamLoop(bridge, outro, condition, false))
+ *         .play(outro, Long.MAX_VALUE)
+ *         .build();
+ * </pre>
+ * The plan is compiled into a flat table of entries: plays of a range of bytes, and loop starts and ends which jump
+ * back or forward in the table. Loops are only asked whether they should continue at their start and at their end,
+ * and a whole range of bytes is read at once, so nothing happens per byte.<br/>
+ * {@link StreamLoop#shouldSkipToEnd(long)} is never called: once a loop stops, the plan goes on with what follows it.
+ * Each loop is restarted (see {@link StreamLoop#restart()}) whenever the plan reaches it, so a plan can be read again
+ * from the start, but as loops hold their own state it cannot be read by two readers at the same time. Plans are read by
+ * {@link LoopingFileChannel#setLoopPlan(LoopPlan)}, as going from one part to another needs random access to the
+ * source.
+ */
+public final class LoopPlan {
+
+    static final byte PLAY = 0;
+    static final byte LOOP_START = 1;
+    static final byte LOOP_END = 2;
+
+    private final byte[] kinds;
+    private final long[] starts;
+    private final long[] ends;
+    private final StreamLoop[] loops;
+    /**
+     * For loop starts, the entry following the matching loop end. For loop ends, the matching loop start
+     */
+    private final int[] jumps;
+
+    private LoopPlan(Builder builder) {
+        int size = builder.kinds.size();
+        kinds = new byte[size];
+        starts = new long[size];
+        ends = new long[size];
+        loops = new StreamLoop[size];
+        jumps = new int[size];
+        for (int i = 0; i < size; i++) {
+            kinds[i] = builder.kinds.get(i);
+            starts[i] = builder.starts.get(i);
+            ends[i] = builder.ends.get(i);
+            loops[i] = builder.loops.get(i);
+            jumps[i] = builder.jumps.get(i);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the number of entries of the compiled table
+     */
+    public int size() {
+        return kinds.length;
+    }
+
+    Cursor newCursor() {
+        return new Cursor();
+    }
+
+    public static final class Builder {
+
+        private final List<Byte> kinds = new ArrayList<>();
+        private final List<Long> starts = new ArrayList<>();
+        private final List<Long> ends = new ArrayList<>();
+        private final List<StreamLoop> loops = new ArrayList<>();
+        private final List<Integer> jumps = new ArrayList<>();
+        /**
+         * Indexes of the loop starts whose end has not been added yet
+         */
+        private final Deque<Integer> openLoops = new ArrayDeque<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Plays the bytes from <code>start</code> (inclusive) to <code>end</code> (exclusive) once
+         * @param end
+         *          The end of the range, {@link Long#MAX_VALUE} to play until the end of the source
+         */
+        public Builder play(long start, long end) {
+            if(start < 0 || end < start)
+                throw new IllegalArgumentException("Invalid range: "+start+" to "+end);
+            add(PLAY, start, end, null, -1);
+            return this;
+        }
+
+        /**
+         * Plays the body of the given loop, from its start position to its end position, as long as it should
+         * continue
+         */
+        public Builder loop(StreamLoop loop) {
+            return beginLoop(loop).play(loop.getStartPosition(), loop.getEndPosition()).endLoop();
+        }
+
+        /**
+         * Starts the body of a loop: everything added until the matching {@link #endLoop()} is played as long as the
+         * loop should continue. The start and end positions of <code>loop</code> are not used.
+         */
+        public Builder beginLoop(StreamLoop loop) {
+            Objects.requireNonNull(loop, "loop");
+            openLoops.push(kinds.size());
+            add(LOOP_START, 0, 0, loop, -1);
+            return this;
+        }
+
+        /**
+         * Ends the body of the last loop started with {@link #beginLoop(StreamLoop)}
+         * @throws IllegalStateException
+         *          If no loop was started, or if its body is empty
+         */
+        public Builder endLoop() {
+            if(openLoops.isEmpty())
+                throw new IllegalStateException("No loop to end");
+            int start = openLoops.pop();
+            if(!kinds.subList(start, kinds.size()).contains(PLAY))
+                throw new IllegalStateException("The body of a loop cannot be empty");
+            add(LOOP_END, 0, 0, loops.get(start), start);
+            jumps.set(start, kinds.size());
+            return this;
+        }
+
+        /**
+         * Compiles the plan
+         * @throws IllegalStateException
+         *          If a loop was started and not ended
+         */
+        public LoopPlan build() {
+            if(!openLoops.isEmpty())
+                throw new IllegalStateException(openLoops.size()+" loop(s) not ended");
+            return new LoopPlan(this);
+        }
+
+        private void add(byte kind, long start, long end, StreamLoop loop, int jump) {
+            kinds.add(kind);
+            starts.add(start);
+            ends.add(end);
+            loops.add(loop);
+            jumps.add(jump);
+        }
+    }
+
+    /**
+     * The state of a reader going through the plan
+     */
+    final class Cursor {
+
+        private int index;
+        private boolean entered;
+        private long position;
+        /**
+         * Number of bytes produced so far
+         */
+        private long produced;
+        /**
+         * For each loop start, the number of bytes produced when its current iteration started
+         */
+        private final long[] iterationStarts = new long[kinds.length];
+        /**
+         * Whether the loop start being reached comes from the end of the same loop
+         */
+        private boolean looping;
+
+        /**
+         * Goes through the loop starts and ends up to the next range of bytes to play
+         * @return
+         *          The number of bytes to play from {@link #position()}, or -1 if the plan is over
+         */
+        long nextRun() {
+            while(index < kinds.length) {
+                switch (kinds[index]) {
+                    case PLAY:
+                        if(!entered) {
+                            entered = true;
+                            position = starts[index];
+                        }
+                        long remaining = ends[index] - position;
+                        if(remaining > 0)
+                            return remaining;
+                        next();
+                        break;
+                    case LOOP_START:
+                        if(!looping) {
+                            // reached from outside of the loop: by an enclosing loop, or by a new reading of the plan
+                            loops[index].restart();
+                        }
+                        looping = false;
+                        if(loops[index].shouldContinue(position)) {
+                            loops[index].onLoopStart();
+                            iterationStarts[index] = produced;
+                            next();
+                        } else {
+                            index = jumps[index];
+                        }
+                        break;
+                    case LOOP_END:
+                        StreamLoop loop = loops[index];
+                        loop.onLoopEnd();
+                        int start = jumps[index];
+                        // an iteration which produced nothing would loop forever
+                        if(produced != iterationStarts[start] && loop.shouldContinue(position)) {
+                            index = start;
+                            looping = true;
+                        } else {
+                            next();
+                        }
+                        break;
+                }
+            }
+            return -1;
+        }
+
+        long position() {
+            return position;
+        }
+
+        void advance(long count) {
+            position += count;
+            produced += count;
+        }
+
+        /**
+         * Ends the range being played, because the source has no more bytes
+         */
+        void endOfSource() {
+            next();
+        }
+
+        private void next() {
+            index++;
+            entered = false;
+        }
+    }
+}
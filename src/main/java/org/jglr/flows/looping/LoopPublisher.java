@@ -0,0 +1,243 @@
+package org.jglr.flows.looping;
+
+import org.jglr.flows.future.FlowFuture;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A <code>LoopPublisher</code> emits the content of a looped source in chunks, only as fast as its subscriber requests
+ * them. It follows the contract of <code>java.util.concurrent.Flow.Publisher&lt;ByteBuffer&gt;</code>, which is not
+ * available on Java 8, with the {@link Subscriber} and {@link Subscription} interfaces below.<br/>
+ * Chunks are read and emitted by tasks run on an {@link Executor}, only while there is demand: no thread waits for a
+ * subscriber to request more, and a task gives its thread back after a few chunks so that many publishers can share a
+ * few threads. The progress, in bytes emitted, is reported through {@link #getFuture()}, which is done once the content
+ * has been entirely emitted or the subscription cancelled.<br/>
+ * As the source is read once, a publisher accepts a single subscriber. The source is closed when the publication ends.<br/>
+ * The source must block until bytes are available: a read returning no bytes ends the publication with an
+ * {@link IOException}, as retrying right away would keep a thread of the executor busy.
+ */
+public class LoopPublisher {
+
+    /**
+     * Number of chunks emitted by a task before it gives its thread back
+     */
+    private static final int BATCH_SIZE = 16;
+
+    private final ReadableByteChannel source;
+    private final Executor executor;
+    private final int chunkSize;
+    private final FlowFuture<Long> future;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final AtomicLong demand = new AtomicLong();
+    /**
+     * Number of times emission was requested since the running task started, 0 if no task is running
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile Throwable invalidRequest;
+    private Subscriber subscriber;
+    private boolean terminated;
+    private long emitted;
+
+    /**
+     * Creates a new instance of LoopPublisher
+     * @param source
+     *          The channel to read the chunks from, a {@link LoopingFileChannel} for instance. Must be blocking
+     * @param executor
+     *          The executor running the tasks reading and emitting the chunks
+     * @param chunkSize
+     *          The maximum size of a chunk
+     * @throws IllegalArgumentException
+     *          If <code>source</code> is a channel in non-blocking mode
+     */
+    public LoopPublisher(ReadableByteChannel source, Executor executor, int chunkSize) {
+        this.source = Objects.requireNonNull(source, "source");
+        if(source instanceof SelectableChannel && !((SelectableChannel) source).isBlocking())
+            throw new IllegalArgumentException("The source must be in blocking mode");
+        this.executor = Objects.requireNonNull(executor, "executor");
+        if(chunkSize <= 0)
+            throw new IllegalArgumentException("The chunk size must be positive: "+chunkSize);
+        this.chunkSize = chunkSize;
+        this.future = new FlowFuture<>();
+    }
+
+    /**
+     * Creates a new instance of LoopPublisher reading a stream, a {@link LoopingInputStream} for instance
+     */
+    public LoopPublisher(InputStream source, Executor executor, int chunkSize) {
+        this(Channels.newChannel(Objects.requireNonNull(source, "source")), executor, chunkSize);
+    }
+
+    /**
+     * Returns the future reporting the number of bytes emitted. Its listeners are called by the emitting tasks, and
+     * should be added before subscribing.
+     */
+    public FlowFuture<Long> getFuture() {
+        return future;
+    }
+
+    /**
+     * Subscribes to the content of this publisher. {@link Subscriber#onSubscribe(Subscription)} is called right away,
+     * on the calling thread. A second subscriber only receives an {@link IllegalStateException} through
+     * {@link Subscriber#onError(Throwable)}.
+     */
+    public void subscribe(Subscriber subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if(!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {}
+
+                @Override
+                public void cancel() {}
+            });
+            subscriber.onError(new IllegalStateException("A LoopPublisher only accepts a single subscriber"));
+            return;
+        }
+        this.subscriber = subscriber;
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                if(n <= 0) {
+                    invalidRequest = new IllegalArgumentException("The number of requested chunks must be positive: "+n);
+                } else {
+                    long current;
+                    do {
+                        current = demand.get();
+                        if(current == Long.MAX_VALUE)
+                            break;
+                    } while(!demand.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+                }
+                schedule();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                schedule();
+            }
+        });
+    }
+
+    private void schedule() {
+        if(pending.getAndIncrement() == 0) {
+            executor.execute(this::emit);
+        }
+    }
+
+    /**
+     * Emits chunks while there is demand. Only one task runs at a time
+     */
+    private void emit() {
+        int missed = 1;
+        do {
+            int count = 0;
+            while(!terminated) {
+                if(cancelled) {
+                    terminate(null, false);
+                    break;
+                }
+                if(invalidRequest != null) {
+                    terminate(invalidRequest, true);
+                    break;
+                }
+                if(demand.get() == 0)
+                    break;
+                if(count == BATCH_SIZE) {
+                    // lets the other tasks of the executor run, this task goes on later
+                    executor.execute(this::emit);
+                    return;
+                }
+                ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+                int read;
+                try {
+                    read = source.read(chunk);
+                } catch (IOException | RuntimeException e) {
+                    terminate(e, true);
+                    break;
+                }
+                if(read < 0) {
+                    terminate(null, true);
+                    break;
+                }
+                if(read == 0) {
+                    terminate(new IOException("The source returned no bytes, it must block until some are available"), true);
+                    break;
+                }
+                chunk.flip();
+                if(demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                count++;
+                emitted += read;
+                subscriber.onNext(chunk);
+                future.progress(emitted);
+            }
+            missed = pending.addAndGet(-missed);
+        } while(missed != 0);
+    }
+
+    private void terminate(Throwable error, boolean notify) {
+        terminated = true;
+        try {
+            source.close();
+        } catch (IOException e) {
+            if(error == null) {
+                error = e;
+            }
+        }
+        future.setDone(emitted);
+        if(notify) {
+            if(error != null) {
+                subscriber.onError(error);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+    }
+
+    /**
+     * Receives the chunks of a {@link LoopPublisher}, like <code>java.util.concurrent.Flow.Subscriber&lt;ByteBuffer&gt;</code>.
+     * The methods are never called concurrently.
+     */
+    public interface Subscriber {
+
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Receives the next chunk, which is never reused by the publisher
+         */
+        void onNext(ByteBuffer chunk);
+
+        void onError(Throwable error);
+
+        void onComplete();
+    }
+
+    /**
+     * Links a {@link Subscriber} to a {@link LoopPublisher}, like <code>java.util.concurrent.Flow.Subscription</code>
+     */
+    public interface Subscription {
+
+        /**
+         * Requests <code>n</code> more chunks. A non positive <code>n</code> ends the publication with an
+         * {@link IllegalArgumentException}
+         */
+        void request(long n);
+
+        /**
+         * Stops the publication. The subscriber may still receive the chunks being emitted
+         */
+        void cancel();
+    }
+}
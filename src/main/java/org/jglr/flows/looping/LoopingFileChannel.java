@@ -0,0 +1,218 @@
+package org.jglr.flows.looping;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * A <code>LoopingFileChannel</code> loops through parts of a file like {@link LoopingInputStream}, with the same
+ * {@link StreamLoop} semantics, but reads the file through a {@link FileChannel}.<br/>
+ * Going back to the start of a loop only changes the position of the next positional read, so no marking nor
+ * resetting is involved, and {@link #transferTo(WritableByteChannel, long)} lets the operating system copy the looped
+ * content straight to another channel (a socket for instance) without it going through the Java heap.<br/>
+ * Instead of a single loop, the channel can also follow a whole {@link LoopPlan}.<br/>
+ * When the end of the file is reached, {@link StreamLoop#continueOnEOFReached(long, LoopingInputStream)} is called
+ * with a <code>null</code> stream.
+ */
+public class LoopingFileChannel implements ReadableByteChannel {
+
+    private final FileChannel channel;
+    /**
+     * Going back to the start of a loop only moves the position of the cursor
+     */
+    private final LoopCursor cursor = new LoopCursor() {
+        @Override
+        void onRewind() {
+        }
+    };
+    /**
+     * The plan being read, <code>null</code> if the current loop is used
+     */
+    private LoopPlan.Cursor plan;
+
+    /**
+     * Creates a new instance of LoopingFileChannel, reading the given channel from its start. The position of
+     * <code>channel</code> is never used nor modified.
+     * @param channel
+     *          The channel of the file to loop. Cannot be <code>null</code>
+     */
+    public LoopingFileChannel(FileChannel channel) {
+        this.channel = Objects.requireNonNull(channel, "channel");
+    }
+
+    /**
+     * Opens the given file for reading and loops through it
+     * @param path
+     *          The file to loop
+     * @return
+     *          A new LoopingFileChannel, which closes the file when closed
+     * @throws IOException
+     *          If the file cannot be opened
+     */
+    public static LoopingFileChannel open(Path path) throws IOException {
+        return new LoopingFileChannel(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    /**
+     * Reads looped bytes into the given buffer. Bytes up to the next loop boundary are read with a single positional
+     * read, unless the current loop has to be checked on every byte (see {@link StreamLoop#isCheckedOnEveryByte()}).
+     */
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        int total = 0;
+        boolean ended = false;
+        while(dst.hasRemaining()) {
+            long run = nextRun();
+            if(run < 0) {
+                ended = true;
+                break;
+            }
+            int chunk = (int) Math.min(run, dst.remaining());
+            int limit = dst.limit();
+            dst.limit(dst.position() + chunk);
+            int read;
+            try {
+                read = channel.read(dst, position());
+            } finally {
+                dst.limit(limit);
+            }
+            if(read == -1) {
+                if(onEndOfFile())
+                    continue;
+                ended = true;
+                break;
+            }
+            if(read == 0)
+                break;
+            advance(read);
+            total += read;
+        }
+        if(total == 0 && ended)
+            return -1;
+        return total;
+    }
+
+    /**
+     * Transfers up to <code>count</code> looped bytes to the given channel with {@link FileChannel#transferTo(long, long, WritableByteChannel)},
+     * one call per loop segment, which the operating system may perform without copying the bytes to user space.
+     * @param target
+     *          The channel to write to
+     * @param count
+     *          The maximum number of bytes to transfer
+     * @return
+     *          The number of bytes transferred, possibly less than <code>count</code> if the target cannot accept more
+     *          right now, or -1 if the looped content has reached its end
+     * @throws IOException
+     *          If reading the file or writing to the target fails
+     */
+    public synchronized long transferTo(WritableByteChannel target, long count) throws IOException {
+        ensureOpen();
+        long total = 0;
+        boolean ended = false;
+        while(total < count) {
+            long run = nextRun();
+            if(run < 0) {
+                ended = true;
+                break;
+            }
+            long chunk = Math.min(run, count - total);
+            long transferred = channel.transferTo(position(), chunk, target);
+            if(transferred == 0) {
+                if(position() >= channel.size()) {
+                    if(onEndOfFile())
+                        continue;
+                    ended = true;
+                    break;
+                }
+                // the target cannot accept more bytes for now
+                break;
+            }
+            advance(transferred);
+            total += transferred;
+            if(transferred < chunk && position() < channel.size())
+                break;
+        }
+        if(total == 0 && ended)
+            return -1;
+        return total;
+    }
+
+    private long nextRun() {
+        return plan != null ? plan.nextRun() : cursor.beforeRead();
+    }
+
+    private long position() {
+        return plan != null ? plan.position() : cursor.position;
+    }
+
+    private void advance(long count) throws IOException {
+        if(plan != null) {
+            plan.advance(count);
+        } else {
+            cursor.afterRead(count);
+        }
+    }
+
+    /**
+     * Called when the end of the file is reached
+     * @return
+     *          <code>true</code> if reading can go on from another position
+     */
+    private boolean onEndOfFile() throws IOException {
+        if(plan != null) {
+            plan.endOfSource();
+            return true;
+        }
+        return cursor.restartOnEOF(null);
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if(!channel.isOpen())
+            throw new ClosedChannelException();
+    }
+
+    public synchronized long getCurrentPosition() {
+        return position();
+    }
+
+    public synchronized StreamLoop getCurrentLoop() {
+        return cursor.currentLoop;
+    }
+
+    /**
+     * Sets the loop to read, replacing the plan set by {@link #setLoopPlan(LoopPlan)} if any
+     */
+    public synchronized void setCurrentLoop(StreamLoop loop) {
+        cursor.currentLoop = loop;
+        this.plan = null;
+    }
+
+    /**
+     * Reads the file following the given plan instead of the current loop, from the start of the plan
+     * @param plan
+     *          The plan to follow, <code>null</code> to go back to reading the current loop
+     */
+    public synchronized void setLoopPlan(LoopPlan plan) {
+        this.plan = plan == null ? null : plan.newCursor();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    /**
+     * Closes the underlying file channel
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -1,11 +1,12 @@
 package org.jglr.flows.looping;
 
 import org.jglr.flows.MarkableFileInputStream;
-import org.jglr.flows.looping.defaults.DoStreamLoop;
+import org.jglr.flows.io.ByteArray;
 import org.jglr.flows.looping.defaults.InfiniteStreamLoop;
 
 import java.io.*;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 
 /**
  * A <code>LoopingInputStream</code> provides methods to loop through a specific part of an InputStream. Could be used
@@ -16,13 +17,78 @@ import java.util.Objects;
  *     <dt>FileInputStreams</dt>
  *     <dd>As they do not support marking, they are wrapped with an instance of {@link MarkableFileInputStream}</dd>
  * </ul>
+ * <code>LoopingInputStream</code> is thread-safe: reading, skipping and changing the cache limit are synchronized, so
+ * a stream can be shared by several threads. Streams only used by one thread should rather be
+ * {@link SingleThreadLoopingInputStream}s, which do not lock on every call.
  */
 public class LoopingInputStream extends FilterInputStream {
 
-    private final StreamLoop mainLoop;
-    private StreamLoop currentLoop;
-    private long currentPosition;
-    private long loopStart;
+    private final LoopCursor cursor = new LoopCursor() {
+        @Override
+        void onBodyStart(long length) {
+            // coming back to the start of the body after an iteration, the mark (or cache) is still valid
+            if(!replaying && (rewoundLoop != currentLoop || loopStart != position)) {
+                startRecording(length);
+            }
+        }
+
+        @Override
+        void onRewind() throws IOException {
+            rewind();
+        }
+
+        @Override
+        void onMainLoop() {
+            recording = false;
+        }
+    };
+    /**
+     * Maximum size of the cached loop body, 0 if caching is disabled
+     */
+    private int cacheLimit;
+    /**
+     * Bytes of the loop body starting at the start of the loop. Once complete, the underlying stream stays positioned
+     * right after them while they are replayed
+     */
+    private ByteArray cache;
+    /**
+     * Position of the first byte of the cache
+     */
+    private long cacheStart;
+    /**
+     * Whether the bytes read from the underlying stream are being appended to the cache
+     */
+    private boolean recording;
+    /**
+     * The loop whose body is in the cache, <code>null</code> if the cache is not complete
+     */
+    private StreamLoop cachedLoop;
+    /**
+     * Whether the bytes are currently read from the cache
+     */
+    private boolean replaying;
+    /**
+     * Position the underlying stream is at. Can be behind the looped position while skipping
+     */
+    private long sourcePosition;
+    /**
+     * Position following the last byte read from the underlying stream so far: bytes before it are known to exist
+     */
+    private long knownEnd;
+    /**
+     * Position of the end of the underlying stream, -1 until it is reached
+     */
+    private long sourceEnd = -1;
+    /**
+     * The last loop that went back to its start, its body is known and the underlying stream marked (or cached)
+     */
+    private StreamLoop rewoundLoop;
+    /**
+     * Whether {@link #skip(long)} is running, in which case going back to the start of a loop does not touch the
+     * underlying stream until the skip is done
+     */
+    private boolean skipping;
+    private boolean resetPending;
 
     /**
      * Creates a new instance of LoopingInputStream. Calls {@link #LoopingInputStream(InputStream, boolean)} with
@@ -57,46 +123,26 @@ public class LoopingInputStream extends FilterInputStream {
                         "was possible. (buffering was said unacceptable)");
             }
         }
-        mainLoop = currentLoop = new DoStreamLoop(0, Long.MAX_VALUE);
     }
 
     @Override
     public synchronized int read() throws IOException {
-        if(currentLoop.shouldContinue(currentPosition)) {
-            if(currentLoop.getStartPosition() == currentPosition) {
-                mark(Integer.MAX_VALUE);
-                currentLoop.onLoopStart();
-                loopStart = currentPosition;
-            }
-            currentPosition++;
-            if(currentLoop.getEndPosition() == currentPosition) {
-                reset();
-                currentPosition = loopStart;
-                currentLoop.onLoopEnd();
-            }
-        } else {
-            if(currentLoop.shouldSkipToEnd(currentPosition)) {
+        return readLooped();
+    }
+
+    final int readLooped() throws IOException {
+        while(true) {
+            if(cursor.beforeRead() < 0)
+                return -1;
+            int result = readSource();
+            if(result == -1) {
+                if(cursor.restartOnEOF(this))
+                    continue;
                 return -1;
-            } else {
-                currentPosition++;
-                if(currentLoop.getEndPosition() == Long.MAX_VALUE || currentLoop.getEndPosition() == currentPosition) {
-                    currentLoop = mainLoop;
-                }
-            }
-        }
-        int result = in.read();
-        if(result == -1) {
-            if(currentLoop.continueOnEOFReached(currentPosition, this)) {
-                currentLoop.onLoopEnd();
-                if(currentLoop.shouldContinue(currentPosition)) {
-                    System.out.println(">>> "+currentPosition);
-                    reset();
-                    currentPosition = loopStart;
-                    return read();
-                }
             }
+            cursor.afterRead(1);
+            return result;
         }
-        return result;
     }
 
     @Override
@@ -104,9 +150,17 @@ public class LoopingInputStream extends FilterInputStream {
         return read(b, 0, b.length);
     }
 
+    /**
+     * Reads up to <code>len</code> bytes. Bytes up to the next loop boundary are read from the underlying stream with
+     * a single call, unless the current loop has to be checked on every byte
+     * (see {@link StreamLoop#isCheckedOnEveryByte()}).
+     */
     @Override
-    public int read(byte[] b, int off, int len) throws IOException {
-        // directly taken from InputStream
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        return readLooped(b, off, len);
+    }
+
+    final int readLooped(byte[] b, int off, int len) throws IOException {
         if (b == null) {
             throw new NullPointerException();
         } else if (off < 0 || len < 0 || len > b.length - off) {
@@ -115,35 +169,355 @@ public class LoopingInputStream extends FilterInputStream {
             return 0;
         }
 
-        int c = read();
-        if (c == -1) {
-            return -1;
+        int total = 0;
+        while(total < len) {
+            long run = cursor.beforeRead();
+            if(run < 0)
+                break;
+            int chunk = (int) Math.min(run, len - total);
+            int read = readSource(b, off + total, chunk);
+            if(read == -1) {
+                if(cursor.restartOnEOF(this))
+                    continue;
+                break;
+            }
+            if(read == 0)
+                break;
+            cursor.afterRead(read);
+            total += read;
+            if(read < chunk) {
+                // the underlying stream has nothing more available right now, do not block for more
+                break;
+            }
         }
-        b[off] = (byte)c;
+        return total == 0 ? -1 : total;
+    }
 
-        int i = 1;
+    /**
+     * Marks the underlying stream at the start of the loop body, unless the whole body is guaranteed to fit in the
+     * cache, and starts recording the body if caching is enabled
+     * @param length
+     *          The length of the loop body, or a huge value if it ends with the underlying stream
+     */
+    private void startRecording(long length) {
+        boolean cacheable = cacheLimit > 0 && cursor.currentLoop != cursor.mainLoop;
+        if(!cacheable || length > cacheLimit) {
+            in.mark(Integer.MAX_VALUE);
+        }
+        cachedLoop = null;
+        recording = cacheable;
+        if(recording) {
+            if(cache == null) {
+                cache = new ByteArray(Math.min(cacheLimit, 8192));
+            }
+            cache.reset();
+            cacheStart = cursor.position;
+        }
+    }
+
+    private void record(byte[] b, int off, int len) {
+        if(cache.getWriteCursor() + len > cacheLimit) {
+            // too large to be cached, the loop falls back to resetting the underlying stream
+            recording = false;
+            return;
+        }
+        cache.putArray(b, off, len);
+    }
+
+    /**
+     * Goes back to the start of the loop body, replaying it from the cache if it has been recorded completely
+     */
+    private void rewind() throws IOException {
+        if(recording) {
+            recording = false;
+            cachedLoop = cursor.currentLoop;
+        }
+        if(cachedLoop == cursor.currentLoop) {
+            replaying = true;
+        } else if(skipping) {
+            resetPending = true;
+        } else {
+            in.reset();
+            sourcePosition = cursor.loopStart;
+        }
+        rewoundLoop = cursor.currentLoop;
+    }
+
+    /**
+     * Reads a byte from the cache while replaying the loop body, from the underlying stream otherwise
+     */
+    private int readSource() throws IOException {
+        if(replaying) {
+            int offset = (int) (cursor.position - cacheStart);
+            if(offset < cache.getWriteCursor())
+                return cache.get(offset) & 0xFF;
+            // the underlying stream is positioned right after the cached bytes
+            replaying = false;
+        }
+        int result = in.read();
+        if(result != -1) {
+            sourceAdvanced(1);
+        } else {
+            sourceEnd = sourcePosition;
+        }
+        if(result != -1 && recording) {
+            if(cache.getWriteCursor() < cacheLimit) {
+                cache.put((byte) result);
+            } else {
+                recording = false;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads bytes from the cache while replaying the loop body, from the underlying stream otherwise
+     */
+    private int readSource(byte[] b, int off, int len) throws IOException {
+        if(replaying) {
+            int offset = (int) (cursor.position - cacheStart);
+            int available = cache.getWriteCursor() - offset;
+            if(available > 0) {
+                int count = Math.min(len, available);
+                System.arraycopy(cache.backingArray(), offset, b, off, count);
+                return count;
+            }
+            replaying = false;
+        }
+        int read = in.read(b, off, len);
+        if(read > 0) {
+            sourceAdvanced(read);
+        } else if(read == -1) {
+            sourceEnd = sourcePosition;
+        }
+        if(read > 0 && recording) {
+            record(b, off, read);
+        }
+        return read;
+    }
+
+    private void sourceAdvanced(long count) {
+        sourcePosition += count;
+        if(sourcePosition > knownEnd) {
+            knownEnd = sourcePosition;
+        }
+    }
+
+    /**
+     * Skips <code>n</code> bytes of the looped stream, calling the loop callbacks as if they had been read.<br/>
+     * Bytes already read once are skipped without any I/O, and whole iterations of loops which can tell how many
+     * iterations remain (see {@link StreamLoop#getRemainingIterations()}) are skipped at once. The underlying stream
+     * is only repositioned at the end, with at most one reset and one skip.
+     */
+    @Override
+    public synchronized long skip(long n) throws IOException {
+        return skipLooped(n);
+    }
+
+    final long skipLooped(long n) throws IOException {
+        if(n <= 0)
+            return 0;
+        long skipped = 0;
+        skipping = true;
         try {
-            for (; i < len ; i++) {
-                c = read();
-                if (c == -1) {
+            while(skipped < n) {
+                skipped += skipIterations(n - skipped);
+                if(skipped >= n)
+                    break;
+                long run = cursor.beforeRead();
+                if(run < 0)
+                    break;
+                long step = skipSource(Math.min(run, n - skipped));
+                if(step < 0) {
+                    if(cursor.restartOnEOF(this))
+                        continue;
                     break;
                 }
-                b[off + i] = (byte)c;
+                cursor.afterRead(step);
+                skipped += step;
             }
-        } catch (IOException ee) {
+        } finally {
+            skipping = false;
+        }
+        syncSource();
+        return skipped;
+    }
+
+    /**
+     * Skips as many whole iterations of the current loop as possible, when it is at the start of its body and has
+     * already been through it once. A body ending past the end of the underlying stream stops there
+     * @return
+     *          The number of bytes skipped
+     */
+    private long skipIterations(long max) {
+        StreamLoop loop = cursor.currentLoop;
+        long start = loop.getStartPosition();
+        long end = loop.getEndPosition();
+        if(end > knownEnd) {
+            // the body has only been seen whole if it went up to the end of the underlying stream
+            if(sourceEnd < 0)
+                return 0;
+            end = sourceEnd;
+        }
+        long length = end - start;
+        if(loop != rewoundLoop || cursor.position != start || cursor.loopStart != start || recording
+                || length <= 0 || loop.isCheckedOnEveryByte())
+            return 0;
+        long remaining = loop.getRemainingIterations();
+        if(remaining < 0 || !loop.shouldContinue(cursor.position))
+            return 0;
+        long iterations = max / length;
+        if(remaining != Long.MAX_VALUE) {
+            // the last iteration may stop the loop, it goes through the regular path
+            iterations = Math.min(iterations, remaining - 1);
+        }
+        if(iterations <= 0)
+            return 0;
+        loop.skipIterations(iterations);
+        return iterations * length;
+    }
+
+    /**
+     * Skips up to <code>count</code> bytes of the source, only moving the looped position forward when the
+     * bytes are known to exist
+     * @return
+     *          The number of bytes skipped, or -1 if the underlying stream has reached its end
+     */
+    private long skipSource(long count) throws IOException {
+        if(replaying) {
+            long cached = cache.getWriteCursor() - (cursor.position - cacheStart);
+            if(cached > 0)
+                return Math.min(count, cached);
+        }
+        if(sourceEnd >= 0) {
+            if(cursor.position >= sourceEnd)
+                return -1;
+            count = Math.min(count, sourceEnd - cursor.position);
+        }
+        if(recording) {
+            // the bytes have to end up in the cache
+            syncSource();
+            byte[] scratch = new byte[(int) Math.min(count, 8192)];
+            return readSource(scratch, 0, scratch.length);
+        }
+        if(cursor.position + count <= knownEnd)
+            return count;
+        syncSource();
+        long skipped = in.skip(count);
+        if(skipped <= 0) {
+            if(in.read() == -1) {
+                sourceEnd = sourcePosition;
+                return -1;
+            }
+            skipped = 1;
+        }
+        sourceAdvanced(skipped);
+        return skipped;
+    }
+
+    /**
+     * Moves the underlying stream to the looped position after bytes were skipped without touching it
+     */
+    private void syncSource() throws IOException {
+        if(replaying) {
+            if(cursor.position - cacheStart < cache.getWriteCursor())
+                return;
+            replaying = false;
+        }
+        if(resetPending) {
+            resetPending = false;
+            in.reset();
+            sourcePosition = cursor.loopStart;
+        }
+        long gap = cursor.position - sourcePosition;
+        while(gap > 0) {
+            long skipped = in.skip(gap);
+            if(skipped <= 0) {
+                if(in.read() == -1) {
+                    sourceEnd = sourcePosition;
+                    break;
+                }
+                skipped = 1;
+            }
+            sourcePosition += skipped;
+            gap -= skipped;
+        }
+    }
+
+    /**
+     * Returns the maximum number of bytes of a loop body kept in memory
+     * @return
+     *          The maximum size of the loop cache, 0 if it is disabled
+     */
+    public int getLoopCacheLimit() {
+        return cacheLimit;
+    }
+
+    /**
+     * Enables caching loop bodies in memory: the first iteration of a loop records its body, and the next ones are
+     * read from memory instead of resetting and reading the underlying stream again.<br/>
+     * Loops whose body is known to fit in the cache do not even mark the underlying stream. When a body turns out to
+     * be larger than the limit, the loop falls back to resetting the underlying stream.
+     * @param limit
+     *          The maximum number of bytes of a loop body kept in memory, 0 to disable caching (the default)
+     */
+    public synchronized void setLoopCacheLimit(int limit) {
+        changeLoopCacheLimit(limit);
+    }
+
+    final void changeLoopCacheLimit(int limit) {
+        if(limit < 0)
+            throw new IllegalArgumentException("The cache limit cannot be negative: "+limit);
+        if(replaying || recording)
+            throw new IllegalStateException("Cannot change the cache limit while a loop body is being cached");
+        cacheLimit = limit;
+        cachedLoop = null;
+        if(limit == 0) {
+            cache = null;
+        }
+    }
+
+    /**
+     * Reads this stream ahead on the given executor, so that the loops going back to their start and the reads of the
+     * underlying stream happen while the previous bytes are consumed. This stream must not be used directly anymore,
+     * and the loops must not be changed while the returned stream is read.
+     * @param executor
+     *          The executor running the reading task, which blocks while the buffers are full
+     * @param bufferSize
+     *          The size of each buffer
+     * @param depth
+     *          The number of buffers, 2 for double buffering
+     * @return
+     *          A new {@link PrefetchingInputStream} reading this stream
+     */
+    public PrefetchingInputStream prefetch(Executor executor, int bufferSize, int depth) {
+        return new PrefetchingInputStream(this, executor, bufferSize, depth);
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        return availableLooped();
+    }
+
+    final int availableLooped() throws IOException {
+        if(replaying) {
+            int cached = cache.getWriteCursor() - (int) (cursor.position - cacheStart);
+            if(cached > 0)
+                return cached;
         }
-        return i;
+        return in.available();
     }
 
     public long getCurrentPosition() {
-        return currentPosition;
+        return cursor.position;
     }
 
     public StreamLoop getCurrentLoop() {
-        return currentLoop;
+        return cursor.currentLoop;
     }
 
     public void setCurrentLoop(StreamLoop loop) {
-        this.currentLoop = loop;
+        cursor.currentLoop = loop;
+        recording = false;
     }
 }
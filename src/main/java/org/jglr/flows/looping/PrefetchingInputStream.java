@@ -0,0 +1,238 @@
+package org.jglr.flows.looping;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A <code>PrefetchingInputStream</code> reads ahead of its consumer: a task running on an {@link Executor} fills
+ * buffers from the underlying stream while the consumer reads the previous ones, so the consumer does not wait for the
+ * underlying stream (a loop going back to its start in a file for instance) as long as the reading task keeps up.<br/>
+ * With a depth of 2, this is double buffering. Every time the consumer has to wait for a buffer to be filled, an
+ * underrun is counted (see {@link #getUnderrunCount()} and {@link #getUnderrunNanos()}).<br/>
+ * The stream is meant to be read by a single thread. Created by {@link LoopingInputStream#prefetch(Executor, int, int)}
+ * for looped streams.
+ */
+public class PrefetchingInputStream extends InputStream {
+
+    private static final Chunk POISON = new Chunk(0);
+
+    private final InputStream in;
+    /**
+     * Buffers the reading task can fill
+     */
+    private final BlockingQueue<Chunk> free;
+    /**
+     * Buffers filled by the reading task, in order
+     */
+    private final BlockingQueue<Chunk> filled;
+    private final int depth;
+    private final int bufferSize;
+    private Chunk current;
+    private volatile boolean closed;
+    private volatile boolean running;
+    private volatile long underruns;
+    private volatile long underrunNanos;
+
+    /**
+     * Creates a new instance of PrefetchingInputStream and starts reading ahead
+     * @param in
+     *          The stream to read ahead. Only read by the reading task from now on
+     * @param executor
+     *          The executor running the reading task. The task blocks while all buffers are full, so the executor
+     *          should not be a shared pool of a few threads for computations, like the common ForkJoinPool
+     * @param bufferSize
+     *          The size of each buffer
+     * @param depth
+     *          The number of buffers, at least 2
+     */
+    public PrefetchingInputStream(InputStream in, Executor executor, int bufferSize, int depth) {
+        this.in = Objects.requireNonNull(in, "in");
+        Objects.requireNonNull(executor, "executor");
+        if(bufferSize <= 0)
+            throw new IllegalArgumentException("The buffer size must be positive: "+bufferSize);
+        if(depth < 2)
+            throw new IllegalArgumentException("At least 2 buffers are needed to read ahead: "+depth);
+        this.bufferSize = bufferSize;
+        this.depth = depth;
+        free = new LinkedBlockingQueue<>();
+        filled = new ArrayBlockingQueue<>(depth);
+        for (int i = 0; i < depth; i++) {
+            free.add(new Chunk(bufferSize));
+        }
+        running = true;
+        executor.execute(this::fill);
+    }
+
+    /**
+     * The reading task: fills free buffers until the underlying stream ends, fails, or this stream is closed
+     */
+    private void fill() {
+        try {
+            while(true) {
+                Chunk chunk = free.take();
+                if(chunk == POISON)
+                    break;
+                chunk.position = 0;
+                chunk.length = 0;
+                boolean end = false;
+                try {
+                    while(chunk.length < chunk.data.length) {
+                        int read = in.read(chunk.data, chunk.length, chunk.data.length - chunk.length);
+                        if(read < 0) {
+                            end = true;
+                            break;
+                        }
+                        chunk.length += read;
+                    }
+                } catch (IOException e) {
+                    chunk.error = e;
+                }
+                chunk.end = end;
+                filled.put(chunk);
+                if(end || chunk.error != null)
+                    break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false;
+            if(closed) {
+                closeSource();
+            }
+        }
+    }
+
+    /**
+     * Returns the buffer to read from, waiting for the reading task if needed
+     * @return
+     *          A buffer with bytes left, or <code>null</code> at the end of the stream
+     */
+    private Chunk next() throws IOException {
+        if(closed)
+            throw new IOException("Stream closed");
+        if(current != null) {
+            if(current.position < current.length)
+                return current;
+            if(current.error != null)
+                throw new IOException(current.error);
+            if(current.end)
+                return null;
+            free.add(current);
+            current = null;
+        }
+        Chunk chunk = filled.poll();
+        if(chunk == null) {
+            underruns++;
+            long start = System.nanoTime();
+            try {
+                chunk = filled.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } finally {
+                underrunNanos += System.nanoTime() - start;
+            }
+        }
+        current = chunk;
+        return next();
+    }
+
+    @Override
+    public int read() throws IOException {
+        Chunk chunk = next();
+        if(chunk == null)
+            return -1;
+        return chunk.data[chunk.position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(off < 0 || len < 0 || len > b.length - off)
+            throw new IndexOutOfBoundsException();
+        if(len == 0)
+            return 0;
+        Chunk chunk = next();
+        if(chunk == null)
+            return -1;
+        int count = Math.min(len, chunk.length - chunk.position);
+        System.arraycopy(chunk.data, chunk.position, b, off, count);
+        chunk.position += count;
+        return count;
+    }
+
+    /**
+     * Returns the number of bytes which can be read without waiting for the reading task
+     */
+    @Override
+    public int available() {
+        Chunk chunk = current;
+        int count = chunk == null ? 0 : chunk.length - chunk.position;
+        for (Chunk ready : filled) {
+            count += ready.length;
+        }
+        return count;
+    }
+
+    /**
+     * Stops reading ahead and closes the underlying stream, once the reading task is done with it
+     */
+    @Override
+    public void close() {
+        if(closed)
+            return;
+        closed = true;
+        free.add(POISON);
+        filled.clear();
+        if(!running) {
+            closeSource();
+        }
+    }
+
+    private void closeSource() {
+        try {
+            in.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the number of times the consumer had to wait for the reading task
+     */
+    public long getUnderrunCount() {
+        return underruns;
+    }
+
+    /**
+     * Returns the total time the consumer spent waiting for the reading task, in nanoseconds
+     */
+    public long getUnderrunNanos() {
+        return underrunNanos;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    private static class Chunk {
+        private final byte[] data;
+        private int length;
+        private int position;
+        private boolean end;
+        private IOException error;
+
+        private Chunk(int size) {
+            data = new byte[size];
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.jglr.flows.looping;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+/**
+ * A <code>SharedLoopSource</code> reads a source once and keeps its bytes in memory, so that any number of readers can
+ * loop through it at the same time, each with its own {@link StreamLoop} and position:
+ * <pre>
+ * SharedLoopSource source = new SharedLoopSource(new FileInputStream(file), loopEnd);
+ * LoopingInputStream client = source.newReader(new DoStreamLoop(loopStart, loopEnd));
+ * </pre>
+ * The bytes are loaded lazily, the first time a reader needs them. Readers only take a lock when they are the first
+ * to go past the loaded bytes: reading bytes which are already loaded, which is what loops do, is lock-free.<br/>
+ * Only the first <code>maxSize</code> bytes of the source are kept, so the memory used only depends on the size of the
+ * looped content and not on the number of readers. Readers see the end of the stream after them.
+ */
+public class SharedLoopSource {
+
+    private static final int BLOCK_SHIFT = 16;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    private final int maxSize;
+    /**
+     * The loaded bytes, in blocks which are never moved once allocated so that readers never see a partial copy
+     */
+    private final byte[][] blocks;
+    private InputStream in;
+    /**
+     * Number of bytes loaded. Written after the bytes themselves, so reading it first makes them visible
+     */
+    private volatile int loaded;
+    /**
+     * Whether the whole source has been loaded, either because it reached its end or because <code>maxSize</code>
+     * bytes were read
+     */
+    private volatile boolean complete;
+
+    /**
+     * Creates a new instance of SharedLoopSource
+     * @param in
+     *          The source to share. Cannot be <code>null</code>. Closed once completely loaded
+     * @param maxSize
+     *          The maximum number of bytes of the source kept in memory, which should cover the end of the loops
+     */
+    public SharedLoopSource(InputStream in, int maxSize) {
+        if(maxSize < 0)
+            throw new IllegalArgumentException("The maximum size cannot be negative: "+maxSize);
+        this.in = Objects.requireNonNull(in, "in");
+        this.maxSize = maxSize;
+        this.blocks = new byte[(int) (((long) maxSize + BLOCK_MASK) >>> BLOCK_SHIFT)][];
+    }
+
+    /**
+     * Creates a new reader of this source, starting at its first byte
+     * @param loop
+     *          The loop the reader follows, which must not be shared with another reader
+     * @return
+     *          A new LoopingInputStream with <code>loop</code> as its current loop, meant to be used by one thread at a
+     *          time (see {@link SingleThreadLoopingInputStream})
+     */
+    public LoopingInputStream newReader(StreamLoop loop) {
+        LoopingInputStream reader = new SingleThreadLoopingInputStream(newStream());
+        reader.setCurrentLoop(loop);
+        return reader;
+    }
+
+    /**
+     * Creates a new stream over the bytes of this source, starting at its first byte. The stream supports marking with
+     * no limit, and resetting it does not read anything again.
+     */
+    public InputStream newStream() {
+        return new SharedStream();
+    }
+
+    /**
+     * Returns the number of bytes loaded so far
+     */
+    public int getLoadedSize() {
+        return loaded;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Makes sure the bytes before <code>end</code> are loaded, unless the source ends before
+     * @return
+     *          The number of bytes loaded
+     */
+    private int load(long end) throws IOException {
+        int count = loaded;
+        if(count >= end || complete)
+            return count;
+        synchronized (this) {
+            count = loaded;
+            long target = Math.min(end, maxSize);
+            while(count < target && !complete) {
+                int block = count >>> BLOCK_SHIFT;
+                if(blocks[block] == null) {
+                    blocks[block] = new byte[Math.min(BLOCK_SIZE, maxSize - (block << BLOCK_SHIFT))];
+                }
+                int offset = count & BLOCK_MASK;
+                int read = in.read(blocks[block], offset, blocks[block].length - offset);
+                if(read < 0) {
+                    finish();
+                    break;
+                }
+                count += read;
+                loaded = count;
+            }
+            if(count >= maxSize && !complete) {
+                finish();
+            }
+            return count;
+        }
+    }
+
+    private void finish() throws IOException {
+        complete = true;
+        InputStream source = in;
+        in = null;
+        source.close();
+    }
+
+    /**
+     * A lock-free view of the loaded bytes, with its own position
+     */
+    private class SharedStream extends InputStream {
+
+        private long position;
+        private long mark;
+
+        @Override
+        public int read() throws IOException {
+            if(position >= loaded && position >= load(position + 1))
+                return -1;
+            byte b = blocks[(int) (position >>> BLOCK_SHIFT)][(int) (position & BLOCK_MASK)];
+            position++;
+            return b & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(off < 0 || len < 0 || len > b.length - off)
+                throw new IndexOutOfBoundsException();
+            if(len == 0)
+                return 0;
+            int available = loaded;
+            if(position >= available) {
+                available = load(position + len);
+                if(position >= available)
+                    return -1;
+            }
+            int count = (int) Math.min(len, available - position);
+            int done = 0;
+            while(done < count) {
+                int offset = (int) (position & BLOCK_MASK);
+                int chunk = Math.min(count - done, BLOCK_SIZE - offset);
+                System.arraycopy(blocks[(int) (position >>> BLOCK_SHIFT)], offset, b, off + done, chunk);
+                position += chunk;
+                done += chunk;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if(n <= 0)
+                return 0;
+            // no more than maxSize bytes are ever loaded, which also keeps the sum from overflowing
+            long available = load(position + Math.min(n, Math.max(0, maxSize - position)));
+            long count = Math.max(0, Math.min(n, available - position));
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.max(0, loaded - position);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public void mark(int readlimit) {
+            mark = position;
+        }
+
+        @Override
+        public void reset() {
+            position = mark;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.jglr.flows.looping;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link LoopingInputStream} meant to be used by a single thread at a time: it behaves exactly the same, but reading
+ * and skipping do not take any lock. Sharing it between threads requires external synchronization, otherwise
+ * {@link LoopingInputStream} should be used.
+ */
+public class SingleThreadLoopingInputStream extends LoopingInputStream {
+
+    /**
+     * Creates a new instance of SingleThreadLoopingInputStream
+     * @see LoopingInputStream#LoopingInputStream(InputStream)
+     */
+    public SingleThreadLoopingInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Creates a new instance of SingleThreadLoopingInputStream
+     * @see LoopingInputStream#LoopingInputStream(InputStream, boolean)
+     */
+    public SingleThreadLoopingInputStream(InputStream in, boolean bufferingAccepted) {
+        super(in, bufferingAccepted);
+    }
+
+    @Override
+    public int read() throws IOException {
+        return readLooped();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        return readLooped(b, off, len);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        return skipLooped(n);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return availableLooped();
+    }
+
+    @Override
+    public void setLoopCacheLimit(int limit) {
+        changeLoopCacheLimit(limit);
+    }
+}
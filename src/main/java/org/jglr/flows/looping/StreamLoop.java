@@ -29,4 +29,47 @@ public abstract class StreamLoop {
     public boolean continueOnEOFReached(long currentPosition, LoopingInputStream in) {
         return shouldContinue(currentPosition);
     }
+
+    /**
+     * Returns the number of iterations this loop will still start, used by {@link LoopingInputStream#skip(long)} to
+     * skip whole iterations at once.
+     * @return
+     *          The number of iterations left, {@link Long#MAX_VALUE} if the loop never stops by itself, or -1 if it
+     *          cannot be known in advance (the default)
+     */
+    public long getRemainingIterations() {
+        return -1;
+    }
+
+    /**
+     * Has the same effect as calling {@link #onLoopStart()} then {@link #onLoopEnd()} <code>iterations</code> times.
+     * Only called with less iterations than {@link #getRemainingIterations()}.
+     * @param iterations
+     *          The number of iterations skipped
+     */
+    public void skipIterations(long iterations) {
+        for (long i = 0; i < iterations; i++) {
+            onLoopStart();
+            onLoopEnd();
+        }
+    }
+
+    /**
+     * Called by {@link LoopPlan} plans each time they reach this loop from outside of it (when the plan is read again, or
+     * when an enclosing loop goes through it again), so that it starts over as if it had never run (a repeated loop counts its iterations from zero again for instance). Does nothing by default.
+     */
+    public void restart() {
+    }
+
+    /**
+     * Tells whether {@link #shouldContinue(long)} and {@link #shouldSkipToEnd(long)} may change from one byte to the
+     * next. If not, they are only expected to change when {@link #onLoopStart()} or {@link #onLoopEnd()} is called,
+     * and {@link LoopingInputStream} reads everything up to the next loop boundary at once.<br/>
+     * Defaults to <code>true</code>, which is always correct but checks the loop before every byte.
+     * @return
+     *          <code>true</code> if the loop has to be checked on every byte
+     */
+    public boolean isCheckedOnEveryByte() {
+        return true;
+    }
 }
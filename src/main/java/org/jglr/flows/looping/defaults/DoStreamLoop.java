@@ -31,4 +31,18 @@ public class DoStreamLoop extends StreamLoop {
     public boolean continueOnEOFReached(long currentPosition, LoopingInputStream in) {
         return false;
     }
+
+    @Override
+    public boolean isCheckedOnEveryByte() {
+        return false;
+    }
+
+    @Override
+    public long getRemainingIterations() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public void skipIterations(long iterations) {
+    }
 }
@@ -22,4 +22,18 @@ public class InfiniteStreamLoop extends StreamLoop {
     public boolean shouldSkipToEnd(long currentPosition) {
         return true;
     }
+
+    @Override
+    public boolean isCheckedOnEveryByte() {
+        return false;
+    }
+
+    @Override
+    public long getRemainingIterations() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public void skipIterations(long iterations) {
+    }
 }
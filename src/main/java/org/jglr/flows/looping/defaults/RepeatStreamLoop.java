@@ -41,4 +41,28 @@ public class RepeatStreamLoop extends StreamLoop {
         return skipToEnd;
     }
 
+    @Override
+    public void restart() {
+        iterationIndex = 0;
+        stop = false;
+    }
+
+    @Override
+    public boolean isCheckedOnEveryByte() {
+        return false;
+    }
+
+    @Override
+    public long getRemainingIterations() {
+        return stop ? 0 : count - iterationIndex;
+    }
+
+    @Override
+    public void skipIterations(long iterations) {
+        iterationIndex = (int) Math.min(count, iterationIndex + iterations);
+        if(iterationIndex >= count) {
+            stop = true;
+        }
+    }
+
 }
@@ -1,24 +1,62 @@
 package org.jglr.flows.looping.defaults;
 
+import org.jglr.flows.looping.LoopingInputStream;
 import org.jglr.flows.looping.StreamLoop;
 
 import java.util.Objects;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
 
+/**
+ * Loops as long as a condition on the current position holds.<br/>
+ * By default the condition is tested before every byte, so the loop can stop anywhere in its body. When it is only
+ * tested at the boundaries of the loop, it is tested when the loop is reached, at the end of each iteration and when
+ * the end of the stream is reached: the body is then always read entirely, and read in bulk.
+ */
 public class WhileStreamLoop extends StreamLoop {
-    private final Predicate<Long> condition;
+    private final LongPredicate condition;
     private final boolean skipToEnd;
+    private final boolean boundariesOnly;
+    /**
+     * Whether the condition has to be tested again, when it is only tested at the boundaries
+     */
+    private boolean stale = true;
+    private boolean continuing;
 
-    public WhileStreamLoop(long startPos, long endPos, Predicate<Long> condition) {
+    public WhileStreamLoop(long startPos, long endPos, LongPredicate condition) {
         this(startPos, endPos, condition, true);
     }
 
-    public WhileStreamLoop(long startPos, long endPos, Predicate<Long> condition, boolean skipToEnd) {
+    public WhileStreamLoop(long startPos, long endPos, LongPredicate condition, boolean skipToEnd) {
+        this(startPos, endPos, condition, skipToEnd, false);
+    }
+
+    /**
+     * Creates a new instance of WhileStreamLoop
+     * @param condition
+     *          The condition on the current position
+     * @param skipToEnd
+     *          Whether the stream ends when the loop stops
+     * @param boundariesOnly
+     *          <code>true</code> to test the condition only at the boundaries of the loop instead of before every byte
+     */
+    public WhileStreamLoop(long startPos, long endPos, LongPredicate condition, boolean skipToEnd, boolean boundariesOnly) {
         super(startPos, endPos);
         this.skipToEnd = skipToEnd;
+        this.boundariesOnly = boundariesOnly;
         this.condition = Objects.requireNonNull(condition, "condition should not be null");
     }
 
+    /**
+     * Creates a loop with a condition on boxed positions, as taken by the constructors of previous versions
+     * @deprecated Boxes every position tested, use the constructors taking a {@link LongPredicate}
+     */
+    @Deprecated
+    public static WhileStreamLoop boxed(long startPos, long endPos, Predicate<Long> condition, boolean skipToEnd) {
+        Objects.requireNonNull(condition, "condition should not be null");
+        return new WhileStreamLoop(startPos, endPos, condition::test, skipToEnd);
+    }
+
     @Override
     public void onLoopStart() {
 
@@ -26,16 +64,42 @@ public class WhileStreamLoop extends StreamLoop {
 
     @Override
     public void onLoopEnd() {
-
+        stale = true;
     }
 
     @Override
     public boolean shouldContinue(long currentPosition) {
-        return condition.test(currentPosition);
+        if(!boundariesOnly)
+            return condition.test(currentPosition);
+        if(stale) {
+            stale = false;
+            continuing = condition.test(currentPosition);
+        }
+        return continuing;
     }
 
     @Override
     public boolean shouldSkipToEnd(long currentPosition) {
         return skipToEnd;
     }
+
+    @Override
+    public boolean continueOnEOFReached(long currentPosition, LoopingInputStream in) {
+        stale = true;
+        return shouldContinue(currentPosition);
+    }
+
+    @Override
+    public void restart() {
+        stale = true;
+    }
+
+    @Override
+    public boolean isCheckedOnEveryByte() {
+        return !boundariesOnly;
+    }
+
+    public boolean isTestedAtBoundariesOnly() {
+        return boundariesOnly;
+    }
 }
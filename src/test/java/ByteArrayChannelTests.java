@@ -0,0 +1,127 @@
+import org.jglr.flows.io.AbstractByteArray;
+import org.jglr.flows.io.ByteArray;
+import org.jglr.flows.io.CompositeByteArray;
+import org.jglr.flows.io.DirectByteArray;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ByteArrayChannelTests {
+
+    @Test
+    public void buffersShareStorage() {
+        ByteArray array = ByteArray.wrap(new byte[]{1, 2, 3, 4, 5});
+        array.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        array.setReadCursor(1);
+        ByteBuffer buffer = array.asByteBuffer();
+        assertEquals(4, buffer.remaining());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.order());
+        buffer.put(0, (byte) 42);
+        assertEquals(42, array.get(1));
+
+        CompositeByteArray composite = CompositeByteArray.of(array, ByteArray.wrap(new byte[]{6}));
+        ByteBuffer[] buffers = composite.asByteBuffers();
+        assertEquals(2, buffers.length);
+        assertEquals(4, buffers[0].remaining());
+        assertEquals(1, buffers[1].remaining());
+    }
+
+    @Test
+    public void gatheringWriteAndRead() throws IOException {
+        File file = File.createTempFile("flows", ".bin");
+        file.deleteOnExit();
+        ByteArray heap = ByteArray.wrap(new byte[]{1, 2, 3});
+        DirectByteArray direct = new DirectByteArray();
+        direct.putArray(new byte[]{4, 5});
+        CompositeByteArray composite = CompositeByteArray.of(ByteArray.wrap(new byte[]{6}), ByteArray.wrap(new byte[]{7, 8}));
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            assertEquals(8L, AbstractByteArray.writeTo(channel, heap, direct, composite));
+        }
+        assertEquals(heap.getWriteCursor(), heap.getReadCursor());
+        assertEquals(direct.getWriteCursor(), direct.getReadCursor());
+        assertEquals(composite.getWriteCursor(), composite.getReadCursor());
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}, Files.readAllBytes(file.toPath()));
+
+        for (AbstractByteArray target : new AbstractByteArray[]{new ByteArray(), new DirectByteArray(2), new CompositeByteArray()}) {
+            try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                assertEquals(5, target.readFrom(channel, 5));
+                assertEquals(3, target.readFrom(channel, 16));
+                assertEquals(-1, target.readFrom(channel, 16));
+            }
+            assertEquals(8, target.length());
+            byte[] result = new byte[8];
+            target.getArray(result);
+            assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}, result);
+
+            target.setReadCursor(2);
+            try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                assertEquals(6, target.writeTo(channel));
+            }
+            assertArrayEquals(new byte[]{3, 4, 5, 6, 7, 8}, Files.readAllBytes(file.toPath()));
+            Files.write(file.toPath(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        }
+    }
+
+    @Test
+    public void inputStream() throws IOException {
+        ByteArray array = ByteArray.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        array.get();
+        InputStream in = array.asInputStream();
+        assertEquals(7, in.available());
+        assertEquals(2, in.read());
+        in.mark(0);
+        byte[] read = new byte[4];
+        assertEquals(4, in.read(read, 0, 4));
+        assertArrayEquals(new byte[]{3, 4, 5, 6}, read);
+        assertEquals(6, array.getReadCursor());
+        in.reset();
+        assertEquals(2, array.getReadCursor());
+        assertEquals(2, in.skip(2));
+        assertEquals(4, in.read(read, 0, 4));
+        assertEquals(-1, in.read());
+        assertEquals(-1, in.read(read, 0, 4));
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    public void outputStreamAndTransfer() throws IOException {
+        CompositeByteArray source = CompositeByteArray.of(ByteArray.wrap(new byte[]{1, 2, 3}), ByteArray.wrap(new byte[]{4, 5}));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(5L, transfer(source.asInputStream(), out));
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, out.toByteArray());
+        assertEquals(0, source.readableBytes());
+
+        ByteArray target = new ByteArray();
+        OutputStream stream = target.asOutputStream();
+        stream.write(9);
+        stream.write(new byte[]{1, 2, 3, 4}, 1, 2);
+        assertEquals(3L, transfer(ByteArray.wrap(new byte[]{7, 7, 7}).asInputStream(), stream));
+        assertEquals(6, target.getWriteCursor());
+        byte[] written = new byte[6];
+        target.getArray(written);
+        assertArrayEquals(new byte[]{9, 2, 3, 7, 7, 7}, written);
+    }
+
+    /**
+     * Calls transferTo, which is only declared by InputStream starting with Java 9
+     */
+    private static long transfer(InputStream in, OutputStream out) throws IOException {
+        try {
+            return (Long) InputStream.class.getMethod("transferTo", OutputStream.class).invoke(in, out);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException(e);
+        }
+    }
+}
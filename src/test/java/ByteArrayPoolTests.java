@@ -0,0 +1,106 @@
+import org.jglr.flows.io.ByteArray;
+import org.jglr.flows.io.ByteArrayPool;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ByteArrayPoolTests {
+
+    @Test
+    public void reuseReleasedArrays() {
+        ByteArrayPool pool = new ByteArrayPool();
+        ByteArray first = pool.acquire(100);
+        assertEquals(128, first.capacity());
+        first.putInt(42);
+        pool.release(first);
+        assertEquals(128, pool.getFootprint());
+
+        ByteArray second = pool.acquire(65);
+        assertSame(first, second);
+        assertEquals(0, second.length());
+        assertEquals(0, second.getWriteCursor());
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(0, pool.getFootprint());
+        assertEquals(1, pool.getOutstanding());
+        pool.release(second);
+    }
+
+    @Test
+    public void grownArraysGoToTheirSizeClass() {
+        ByteArrayPool pool = new ByteArrayPool();
+        ByteArray array = pool.acquire(64);
+        array.putArray(new byte[200]);
+        assertEquals(200, array.capacity());
+        pool.release(array);
+        assertSame(array, pool.acquire(128));
+    }
+
+    @Test
+    public void oversizedArraysAreNotPooled() {
+        ByteArrayPool pool = new ByteArrayPool(64, 1024, 8, 8, false);
+        ByteArray array = pool.acquire(4096);
+        assertEquals(4096, array.capacity());
+        pool.release(array);
+        assertEquals(0, pool.getFootprint());
+    }
+
+    @Test
+    public void largestSizeClass() {
+        // the largest allowed size class must not make releases overflow
+        ByteArrayPool pool = new ByteArrayPool(64, 1 << 30, 4, 4, false);
+        ByteArray array = pool.acquire(100);
+        pool.release(array);
+        assertEquals(128, pool.getFootprint());
+        assertSame(array, pool.acquire(100));
+    }
+
+    @Test
+    public void cachesOfDeadThreadsAreDropped() throws InterruptedException {
+        ByteArrayPool pool = new ByteArrayPool(64, 1024, 8, 0, false);
+        Thread worker = new Thread(() -> pool.release(pool.acquire(100)));
+        worker.start();
+        worker.join();
+        // the array went to the cache of the worker, which died with it
+        assertEquals(0, pool.getFootprint());
+
+        pool.release(pool.acquire(200));
+        assertEquals(256, pool.getFootprint());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void doubleRelease() {
+        ByteArrayPool pool = new ByteArrayPool();
+        ByteArray array = pool.acquire(10);
+        pool.release(array);
+        pool.release(array);
+    }
+
+    @Test
+    public void sharedPoolAcrossThreads() throws InterruptedException {
+        ByteArrayPool pool = new ByteArrayPool(64, 1024, 0, 8, false);
+        ByteArray[] holder = new ByteArray[1];
+        Thread producer = new Thread(() -> {
+            holder[0] = pool.acquire(64);
+            pool.release(holder[0]);
+        });
+        producer.start();
+        producer.join();
+        assertSame(holder[0], pool.acquire(64));
+    }
+
+    @Test
+    public void leakDetection() throws InterruptedException {
+        ByteArrayPool pool = new ByteArrayPool(true);
+        pool.acquire(10);
+        for (int i = 0; i < 20 && pool.getLeaks() == 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+            pool.checkLeaks();
+        }
+        assertTrue(pool.getLeaks() > 0);
+        assertEquals(0, pool.getOutstanding());
+    }
+}
@@ -0,0 +1,382 @@
+import org.jglr.flows.io.AbstractByteArray;
+import org.jglr.flows.io.ByteArray;
+import org.jglr.flows.io.DirectByteArray;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ByteArrayTests {
+
+    @Test
+    public void byteOrderLayout() {
+        ByteArray big = new ByteArray(4);
+        big.setByteOrder(ByteOrder.BIG_ENDIAN);
+        big.putInt(0x01020304);
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, big.backingArray());
+
+        ByteArray little = new ByteArray(4);
+        little.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        little.putInt(0x01020304);
+        assertArrayEquals(new byte[]{4, 3, 2, 1}, little.backingArray());
+    }
+
+    /**
+     * Pins the exact bytes written for every word, as they are part of the format of the data written by callers
+     */
+    @Test
+    public void wordEncoding() {
+        byte[] bigEndian = {
+                0x01, 0x02,
+                0x01, 0x02, 0x03, 0x04,
+                0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08,
+                (byte) 0xF1, (byte) 0xF2, (byte) 0xF3, (byte) 0xF4,
+                0x3F, (byte) 0x80, 0x00, 0x00,
+                0x40, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
+        };
+        byte[] littleEndian = {
+                0x02, 0x01,
+                0x04, 0x03, 0x02, 0x01,
+                0x08, 0x07, 0x06, 0x05, 0x04, 0x03, 0x02, 0x01,
+                (byte) 0xF4, (byte) 0xF3, (byte) 0xF2, (byte) 0xF1,
+                0x00, 0x00, (byte) 0x80, 0x3F,
+                0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x40
+        };
+        for (AbstractByteArray array : new AbstractByteArray[]{new ByteArray(8), new DirectByteArray(8)}) {
+            array.setByteOrder(ByteOrder.BIG_ENDIAN);
+            writeWords(array);
+            assertArrayEquals(bigEndian, readAll(array));
+
+            array.reset();
+            array.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+            writeWords(array);
+            assertArrayEquals(littleEndian, readAll(array));
+        }
+    }
+
+    private static void writeWords(AbstractByteArray array) {
+        array.putShort((short) 0x0102);
+        array.putInt(0x01020304);
+        array.putLong(0x0102030405060708L);
+        array.putUnsignedInt(0xF1F2F3F4L);
+        array.putFloat(1f);
+        array.putDouble(2.0);
+    }
+
+    private static byte[] readAll(AbstractByteArray array) {
+        byte[] bytes = new byte[array.getWriteCursor() - array.getReadCursor()];
+        array.getArray(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void primitiveRoundTrip() {
+        for(ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            primitiveRoundTrip(AbstractByteArray.allocate(0), order);
+            primitiveRoundTrip(AbstractByteArray.allocateDirect(0), order);
+        }
+    }
+
+    private void primitiveRoundTrip(AbstractByteArray array, ByteOrder order) {
+        array.setByteOrder(order);
+        array.putShort((short) -2);
+        array.putInt(-123456789);
+        array.putUnsignedInt(0xFFFFFFFEL);
+        array.putLong(0x0102030405060708L);
+        array.putFloat(1.5f);
+        array.putDouble(-2.25);
+
+        assertEquals(-2, array.getShort());
+        assertEquals(-123456789, array.getInt());
+        assertEquals(0xFFFFFFFEL, array.getUnsignedInt());
+        assertEquals(0x0102030405060708L, array.getLong());
+        assertEquals(1.5f, array.getFloat(), 0f);
+        assertEquals(-2.25, array.getDouble(), 0.0);
+
+        array.putInt(42, 2);
+        assertEquals(42, array.getInt(2));
+    }
+
+    @Test
+    public void primitiveWritesDoNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean))
+            return;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if(!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+            return;
+        ByteArray array = new ByteArray(1024 * 28);
+        long sink = 0;
+        // warm-up, so that the measured loop is compiled
+        for (int i = 0; i < 20; i++) {
+            sink += writeAndRead(array);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100; i++) {
+            sink += writeAndRead(array);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        System.out.println(">> ByteArray primitives: "+allocated+" bytes allocated for "+100*1024*4+" calls (checksum "+sink+")");
+        // leave some slack for the measuring itself
+        assertTrue("Allocated "+allocated+" bytes", allocated < 4096);
+    }
+
+    @Test
+    public void geometricGrowth() {
+        ByteArray array = new ByteArray();
+        int reallocations = 0;
+        int capacity = array.capacity();
+        for (int i = 0; i < 1024 * 1024; i++) {
+            array.put((byte) i);
+            if(array.capacity() != capacity) {
+                reallocations++;
+                capacity = array.capacity();
+            }
+        }
+        assertEquals(1024 * 1024, array.length());
+        assertTrue("Too many reallocations: "+reallocations, reallocations < 32);
+        assertTrue(array.capacity() >= array.length());
+
+        array.trimToSize();
+        assertEquals(array.length(), array.capacity());
+        assertEquals(array.length(), array.backingArray().length);
+    }
+
+    @Test
+    public void capacityIsNotLength() {
+        ByteArray array = new ByteArray(64);
+        assertEquals(0, array.length());
+        assertEquals(64, array.capacity());
+        array.putInt(1);
+        assertEquals(4, array.length());
+        array.putInt(2, 10);
+        assertEquals(14, array.length());
+
+        array.ensureCapacity(1000);
+        assertTrue(array.capacity() >= 1000);
+        assertEquals(14, array.length());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void maxCapacity() {
+        ByteArray array = new ByteArray(8);
+        array.setMaxCapacity(16);
+        array.putLong(0L);
+        array.putLong(0L);
+        array.put((byte) 0);
+    }
+
+    @Test
+    public void bulkCopies() {
+        byte[] frame = new byte[4096];
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = (byte) (i * 31);
+        }
+        ByteArray first = ByteArray.wrap(frame);
+        ByteArray second = new ByteArray();
+        second.putArray(frame, 100, 200);
+        second.putArray(new byte[]{1, 2, 3}, 0);
+        second.setReadCursor(3);
+
+        ByteArray joined = ByteArray.joinAndReset(first, second);
+        assertEquals(frame.length + 197, joined.length());
+        assertEquals(0, first.getReadCursor());
+        assertEquals(3, second.getReadCursor());
+
+        byte[] drained = new byte[frame.length];
+        joined.getArray(drained);
+        assertArrayEquals(frame, drained);
+        byte[] rest = new byte[197];
+        joined.getArray(rest, 0, rest.length);
+        for (int i = 0; i < rest.length; i++) {
+            assertEquals(frame[103 + i], rest[i]);
+        }
+
+        ByteArray all = ByteArray.join(first, second);
+        assertEquals(joined.length(), all.length());
+        assertEquals(first.getWriteCursor(), first.getReadCursor());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void bulkReadPastLength() {
+        ByteArray array = ByteArray.wrap(new byte[8]);
+        array.getArray(new byte[9]);
+    }
+
+    @Test
+    public void directAndHeapInterop() {
+        DirectByteArray direct = new DirectByteArray(4);
+        direct.setByteOrder(ByteOrder.BIG_ENDIAN);
+        direct.putInt(0x01020304);
+        direct.putArray(new byte[]{5, 6, 7, 8});
+        assertEquals(8, direct.length());
+        assertEquals(0x05060708, direct.getInt(4));
+
+        ByteArray heap = ByteArray.join(direct);
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}, heap.backingArray());
+
+        DirectByteArray copy = new DirectByteArray();
+        heap.setReadCursor(2);
+        copy.putArray(heap);
+        direct.setReadCursor(0);
+        copy.putArray(direct);
+        byte[] result = new byte[copy.length()];
+        copy.getArray(result);
+        assertArrayEquals(new byte[]{3, 4, 5, 6, 7, 8, 1, 2, 3, 4, 5, 6, 7, 8}, result);
+
+        copy.trimToSize();
+        assertEquals(14, copy.capacity());
+    }
+
+    @Test
+    public void slicesShareStorage() {
+        ByteArray array = ByteArray.wrap(new byte[]{0, 1, 2, 3, 4, 5, 6, 7});
+        array.setByteOrder(ByteOrder.BIG_ENDIAN);
+        AbstractByteArray slice = array.slice(2, 4);
+        slice.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(4, slice.length());
+        assertEquals(0, slice.getReadCursor());
+        assertEquals(0x05040302, slice.getInt());
+
+        slice.put((byte) 42, 0);
+        assertEquals(42, array.get(2));
+        assertEquals(0x2A030405, array.getInt(2));
+
+        AbstractByteArray nested = slice.slice(1, 2);
+        assertEquals(3, nested.get());
+        assertEquals(0, array.getReadCursor());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void slicesCannotGrow() {
+        ByteArray array = ByteArray.wrap(new byte[8]);
+        AbstractByteArray slice = array.slice(0, 4);
+        slice.putInt(0);
+    }
+
+    @Test
+    public void duplicateHasIndependentCursors() {
+        ByteArray array = new ByteArray();
+        array.putInt(1);
+        array.putInt(2);
+        AbstractByteArray first = array.duplicate();
+        AbstractByteArray second = array.duplicate();
+        assertEquals(array.getByteOrder(), first.getByteOrder());
+        assertEquals(8, first.getWriteCursor());
+        assertEquals(1, first.getInt());
+        assertEquals(1, second.getInt());
+        assertEquals(2, second.getInt());
+        assertEquals(2, first.getInt());
+
+        // writing past the end grows the parent
+        first.putInt(3);
+        assertEquals(12, array.length());
+        assertEquals(3, array.getInt(8));
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void readOnlyViews() {
+        ByteArray array = ByteArray.wrap(new byte[]{1, 2, 3});
+        AbstractByteArray readOnly = array.asReadOnly();
+        assertTrue(readOnly.isReadOnly());
+        assertTrue(readOnly.slice(0, 1).isReadOnly());
+        array.put((byte) 4, 0);
+        assertEquals(4, readOnly.get());
+        readOnly.put((byte) 5, 0);
+    }
+
+    @Test
+    public void varints() {
+        for(AbstractByteArray array : new AbstractByteArray[]{new ByteArray(), new DirectByteArray()}) {
+            long[] values = {0L, 1L, 127L, 128L, 300L, Integer.MAX_VALUE, -1L, Long.MIN_VALUE, Long.MAX_VALUE};
+            for (long value : values) {
+                array.putVarLong(value);
+                array.putSignedVarLong(value);
+                array.putSignedVarInt((int) value);
+            }
+            for (long value : values) {
+                assertEquals(value, array.getVarLong());
+                assertEquals(value, array.getSignedVarLong());
+                assertEquals((int) value, array.getSignedVarInt());
+            }
+            array.reset();
+            array.putVarInt(300);
+            assertEquals(2, array.getWriteCursor());
+            array.putSignedVarInt(-1);
+            assertEquals(3, array.getWriteCursor());
+            array.putVarInt(-1);
+            assertEquals(8, array.getWriteCursor());
+            assertEquals(300, array.getVarInt());
+            assertEquals(-1, array.getSignedVarInt());
+            assertEquals(-1, array.getVarInt());
+        }
+    }
+
+    @Test
+    public void malformedVarLong() {
+        for(AbstractByteArray array : new AbstractByteArray[]{new ByteArray(), new DirectByteArray()}) {
+            for (int i = 0; i < 9; i++) {
+                array.put((byte) 0xFF);
+            }
+            // 10th byte with more than the 64th bit set
+            array.put((byte) 0x7F);
+            try {
+                array.getVarLong();
+                fail("Decoded a varint which does not fit in a long");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void strings() {
+        String[] samples = {"", "Hello I'm just a test file!", "caf\u00e9 \u20ac", "\ud83c\udfb5 loop", "broken \ud800 surrogate"};
+        for(AbstractByteArray array : new AbstractByteArray[]{new ByteArray(), new DirectByteArray()}) {
+            for (String sample : samples) {
+                byte[] expected = sample.getBytes(StandardCharsets.UTF_8);
+                assertEquals(expected.length, AbstractByteArray.utf8Length(sample));
+                int start = array.getWriteCursor();
+                assertEquals(expected.length, array.putUTF8(sample));
+                byte[] written = new byte[expected.length];
+                array.setReadCursor(start);
+                array.getArray(written);
+                assertArrayEquals(expected, written);
+
+                array.setReadCursor(start);
+                assertEquals(new String(expected, StandardCharsets.UTF_8), array.getUTF8(expected.length));
+
+                array.putString(sample);
+                assertEquals(new String(expected, StandardCharsets.UTF_8), array.getString());
+            }
+            array.reset();
+            array.putChars("abcd");
+            assertEquals(8, array.getWriteCursor());
+        }
+    }
+
+    private long writeAndRead(ByteArray array) {
+        array.reset();
+        for (int i = 0; i < 1024; i++) {
+            array.putInt(i);
+            array.putLong(i);
+            array.putUnsignedInt(i);
+            array.putLong(i, array.getWriteCursor()-8);
+        }
+        long sum = 0;
+        for (int i = 0; i < 1024; i++) {
+            sum += array.getInt();
+            sum += array.getLong();
+            sum += array.getUnsignedInt();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,134 @@
+import org.jglr.flows.io.AbstractByteArray;
+import org.jglr.flows.io.ByteArray;
+import org.jglr.flows.io.CRC32C;
+import org.jglr.flows.io.CompositeByteArray;
+import org.jglr.flows.io.DirectByteArray;
+import org.jglr.flows.io.RingByteArray;
+import org.jglr.flows.io.XXHash64;
+import org.junit.Test;
+
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ByteSearchTests {
+
+    @Test
+    public void indexOfByte() {
+        byte[] bytes = new byte[100];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i % 50 + 1);
+        }
+        for (AbstractByteArray array : arrays(bytes)) {
+            for (int i = 0; i < 50; i++) {
+                assertEquals(i, array.indexOf((byte) (i + 1)));
+                assertEquals(50 + i, array.indexOf((byte) (i + 1), i + 1, 100));
+            }
+            assertEquals(-1, array.indexOf((byte) 0));
+            // a 0x01 byte after a match must not be reported as a match for 0x00
+            assertEquals(-1, array.indexOf((byte) 51));
+        }
+    }
+
+    @Test
+    public void indexOfPattern() {
+        byte[] bytes = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\nbody".getBytes(StandardCharsets.US_ASCII);
+        byte[] end = "\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        for (AbstractByteArray array : arrays(bytes)) {
+            assertEquals(31, array.indexOf(end));
+            assertEquals(14, array.indexOf(new byte[]{'\r', '\n'}));
+            assertEquals(-1, array.indexOf(end, 0, 34));
+            assertEquals(3, array.indexOf(new byte[0], 3, 10));
+        }
+    }
+
+    @Test
+    public void compareAndHash() {
+        byte[] bytes = new byte[77];
+        new Random(42).nextBytes(bytes);
+        AbstractByteArray[] arrays = arrays(bytes);
+        for (AbstractByteArray a : arrays) {
+            for (AbstractByteArray b : arrays) {
+                assertEquals(a, b);
+                assertEquals(a.hashCode(), b.hashCode());
+                assertEquals(0, a.compareTo(b));
+                assertEquals(-1, a.mismatch(b));
+            }
+        }
+        ByteArray changed = ByteArray.wrap(bytes);
+        changed.put((byte) (bytes[60] + 1), 60);
+        assertEquals(60, arrays[0].mismatch(changed));
+        assertEquals(60, AbstractByteArray.mismatch(arrays[1], 0, changed, 0, 77));
+        assertTrue(!arrays[0].equals(changed));
+
+        ByteArray prefix = new ByteArray(new byte[]{1, 2, 3});
+        ByteArray longer = new ByteArray(new byte[]{1, 2, 3, 4});
+        prefix.setWriteCursor(3);
+        longer.setWriteCursor(4);
+        assertEquals(3, prefix.mismatch(longer));
+        assertTrue(prefix.compareTo(longer) < 0);
+        // bytes are compared as unsigned values
+        ByteArray high = new ByteArray(new byte[]{1, 2, (byte) 0x80});
+        high.setWriteCursor(3);
+        assertTrue(high.compareTo(longer) > 0);
+    }
+
+    @Test
+    public void checksums() {
+        byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+        CRC32C crc = new CRC32C();
+        crc.update(check, 0, check.length);
+        assertEquals(0xE3069283L, crc.getValue());
+
+        XXHash64 hash = new XXHash64();
+        assertEquals(0xEF46DB3751D8E999L, hash.getValue());
+        byte[] bytes = new byte[100];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        assertEquals(0x6AC1E58032166597L, XXHash64.hash(bytes, 0, bytes.length, 0L));
+        // incremental updates, over every kind of storage
+        for (AbstractByteArray array : arrays(bytes)) {
+            hash.reset();
+            array.updateChecksum(hash, 0, 7);
+            array.updateChecksum(hash, 7, 40);
+            array.updateChecksum(hash, 47, 53);
+            assertEquals(0x6AC1E58032166597L, hash.getValue());
+
+            crc.reset();
+            array.updateChecksum(crc);
+            CRC32C expected = new CRC32C();
+            for (byte b : bytes) {
+                expected.update(b);
+            }
+            assertEquals(expected.getValue(), crc.getValue());
+        }
+    }
+
+    /**
+     * The same bytes, stored in every kind of byte array
+     */
+    private static AbstractByteArray[] arrays(byte[] bytes) {
+        ByteArray heap = ByteArray.wrap(bytes);
+        DirectByteArray direct = new DirectByteArray(bytes.length);
+        direct.setByteOrder(ByteOrder.BIG_ENDIAN);
+        direct.putArray(bytes);
+        int half = bytes.length / 2;
+        ByteArray first = new ByteArray(half);
+        first.putArray(bytes, 0, half);
+        ByteArray second = new ByteArray(bytes.length - half);
+        second.putArray(bytes, half, bytes.length - half);
+        CompositeByteArray composite = CompositeByteArray.of(first, second);
+        RingByteArray ring = new RingByteArray(bytes.length);
+        ring.putArray(new byte[bytes.length / 3]);
+        ring.getArray(new byte[bytes.length / 3]);
+        ring.compact();
+        ring.putArray(bytes);
+        ring.setReadCursor(ring.getWriteCursor() - bytes.length);
+        AbstractByteArray ringView = ring.slice(ring.getReadCursor(), bytes.length);
+        return new AbstractByteArray[]{heap, direct, composite, ringView};
+    }
+}
@@ -0,0 +1,68 @@
+import org.jglr.flows.io.ByteArray;
+import org.jglr.flows.io.CompositeByteArray;
+import org.jglr.flows.io.DirectByteArray;
+import org.junit.Test;
+
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CompositeByteArrayTests {
+
+    @Test
+    public void readsAcrossComponents() {
+        ByteArray first = ByteArray.wrap(new byte[]{1, 2, 3});
+        DirectByteArray second = new DirectByteArray();
+        second.putArray(new byte[]{4, 5, 6, 7, 8, 9});
+        second.setReadCursor(1);
+        CompositeByteArray composite = CompositeByteArray.of(first, second);
+        composite.setByteOrder(ByteOrder.BIG_ENDIAN);
+
+        assertEquals(8, composite.length());
+        assertEquals(2, composite.getComponentCount());
+        assertEquals(0x01020305, composite.getInt());
+        assertEquals(0x06070809, composite.getInt());
+        assertEquals(0x0305, composite.getShort(2));
+
+        byte[] all = new byte[8];
+        composite.setReadCursor(0);
+        composite.getArray(all);
+        assertArrayEquals(new byte[]{1, 2, 3, 5, 6, 7, 8, 9}, all);
+        // components are not consumed
+        assertEquals(0, first.getReadCursor());
+        assertEquals(1, second.getReadCursor());
+    }
+
+    @Test
+    public void writesGoThroughToComponents() {
+        ByteArray first = ByteArray.wrap(new byte[4]);
+        ByteArray second = ByteArray.wrap(new byte[4]);
+        CompositeByteArray composite = CompositeByteArray.of(first, second);
+        composite.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        composite.putInt(0x04030201, 2);
+        assertArrayEquals(new byte[]{0, 0, 1, 2}, first.backingArray());
+        assertArrayEquals(new byte[]{3, 4, 0, 0}, second.backingArray());
+
+        // writing past the end appends an owned component
+        composite.setWriteCursor(composite.length());
+        composite.putLong(-1L);
+        assertEquals(16, composite.length());
+        assertEquals(-1L, composite.getLong(8));
+        assertEquals(3, composite.getComponentCount());
+    }
+
+    @Test
+    public void consolidate() {
+        CompositeByteArray composite = CompositeByteArray.of(ByteArray.wrap(new byte[]{1, 2}), ByteArray.wrap(new byte[]{3}));
+        composite.put((byte) 4, 3);
+        composite.addComponent(ByteArray.wrap(new byte[]{5}));
+        assertEquals(5, composite.length());
+        assertEquals(5, composite.capacity());
+
+        ByteArray single = composite.consolidate();
+        assertEquals(1, composite.getComponentCount());
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, single.backingArray());
+        assertEquals(4, composite.get(3));
+    }
+}
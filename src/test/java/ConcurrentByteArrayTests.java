@@ -0,0 +1,84 @@
+import org.jglr.flows.io.ByteArray;
+import org.jglr.flows.io.ConcurrentByteArray;
+import org.junit.Test;
+
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ConcurrentByteArrayTests {
+
+    @Test
+    public void claimAndPublish() {
+        ConcurrentByteArray log = new ConcurrentByteArray(16, ByteOrder.BIG_ENDIAN);
+        long first = log.claim(4);
+        long second = log.claim(4);
+        log.putInt(2, second);
+        assertEquals(0, log.readableBytes());
+        log.putInt(1, first);
+        log.publish(first, 4);
+        log.publish(second, 4);
+        ByteArray out = new ByteArray();
+        out.setByteOrder(ByteOrder.BIG_ENDIAN);
+        assertEquals(8, log.drainTo(out));
+        assertEquals(1, out.getInt());
+        assertEquals(2, out.getInt());
+    }
+
+    @Test
+    public void fullWhenNotDrained() {
+        ConcurrentByteArray log = new ConcurrentByteArray(8);
+        assertEquals(true, log.append(new byte[6]));
+        assertEquals(false, log.append(new byte[3]));
+        log.drainTo(new ByteArray(), 4);
+        // wraps around the end of the storage
+        assertEquals(true, log.append(new byte[]{1, 2, 3}));
+        ByteArray out = new ByteArray();
+        assertEquals(5, log.drainTo(out));
+        assertArrayEquals(new byte[]{0, 0, 1, 2, 3}, Arrays.copyOf(out.backingArray(), 5));
+    }
+
+    @Test
+    public void concurrentProducers() throws InterruptedException {
+        final int producers = 8;
+        final int records = 20000;
+        final ConcurrentByteArray log = new ConcurrentByteArray(4096);
+        Thread[] threads = new Thread[producers];
+        for (int t = 0; t < producers; t++) {
+            final int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < records; i++) {
+                    long position;
+                    while((position = log.claim(8)) < 0) {
+                        Thread.yield();
+                    }
+                    log.putInt(id, position);
+                    log.putInt(i, position + 4);
+                    log.publish(position, 8);
+                }
+            });
+            threads[t].start();
+        }
+        ByteArray out = new ByteArray();
+        out.setByteOrder(log.getByteOrder());
+        int[] next = new int[producers];
+        long total = (long) producers * records * 8;
+        long read = 0;
+        while(read < total) {
+            read += log.drainTo(out);
+            while(out.readableBytes() >= 8) {
+                int id = out.getInt();
+                assertEquals(next[id]++, out.getInt());
+            }
+            out.compact();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int t = 0; t < producers; t++) {
+            assertEquals(records, next[t]);
+        }
+    }
+}
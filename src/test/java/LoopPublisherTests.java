@@ -0,0 +1,171 @@
+import org.jglr.flows.future.FlowFuture;
+import org.jglr.flows.future.FlowProgressListener;
+import org.jglr.flows.looping.LoopPublisher;
+import org.jglr.flows.looping.LoopingInputStream;
+import org.jglr.flows.looping.defaults.RepeatStreamLoop;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoopPublisherTests {
+
+    private static final byte[] DIGITS = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void emitsOnDemand() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            LoopingInputStream input = new LoopingInputStream(new ByteArrayInputStream(DIGITS));
+            input.setCurrentLoop(new RepeatStreamLoop(2, 5, 100, false));
+            LoopPublisher publisher = new LoopPublisher(input, executor, 7);
+            long[] done = {-1};
+            publisher.getFuture().addListener(new FlowProgressListener<Long>() {
+                @Override
+                public void onProgress(FlowFuture<Long> future, Long progressValue) {
+                }
+
+                @Override
+                public void onDone(FlowFuture<Long> future, Long finalValue) {
+                    done[0] = finalValue;
+                }
+            });
+            CollectingSubscriber subscriber = new CollectingSubscriber(1);
+            publisher.subscribe(subscriber);
+            assertTrue(subscriber.finished.await(10, TimeUnit.SECONDS));
+
+            String expected = "01" + new String(new char[100]).replace("\0", "234") + "56789";
+            assertEquals(null, subscriber.error.get());
+            assertEquals(expected, new String(subscriber.bytes.toByteArray(), StandardCharsets.US_ASCII));
+            // one chunk per request
+            assertEquals((expected.length() + 6) / 7, subscriber.chunks);
+            assertTrue(publisher.getFuture().isDone());
+            assertEquals(expected.length(), done[0]);
+
+            CollectingSubscriber second = new CollectingSubscriber(1);
+            publisher.subscribe(second);
+            assertTrue(second.error.get() instanceof IllegalStateException);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void cancel() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            LoopingInputStream input = new LoopingInputStream(new ByteArrayInputStream(DIGITS));
+            input.setCurrentLoop(new RepeatStreamLoop(0, 10, Integer.MAX_VALUE));
+            LoopPublisher publisher = new LoopPublisher(input, executor, 10);
+            CollectingSubscriber subscriber = new CollectingSubscriber(0);
+            publisher.subscribe(subscriber);
+            subscriber.subscription.request(3);
+            executor.submit(() -> {}).get();
+            assertEquals(30, subscriber.bytes.size());
+            assertTrue(!publisher.getFuture().isDone());
+            subscriber.subscription.cancel();
+            subscriber.subscription.request(3);
+            executor.submit(() -> {}).get();
+            assertEquals(30, subscriber.bytes.size());
+            assertTrue(publisher.getFuture().isDone());
+            assertEquals(30L, (long) publisher.getFuture().getProgress());
+            assertEquals(1, subscriber.finished.getCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void sourceReturningNoBytes() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ReadableByteChannel empty = new ReadableByteChannel() {
+                @Override
+                public int read(ByteBuffer dst) {
+                    return 0;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return true;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+            LoopPublisher publisher = new LoopPublisher(empty, executor, 10);
+            CollectingSubscriber subscriber = new CollectingSubscriber(1);
+            publisher.subscribe(subscriber);
+            assertTrue(subscriber.finished.await(10, TimeUnit.SECONDS));
+            assertTrue(subscriber.error.get() instanceof IOException);
+            assertTrue(publisher.getFuture().isDone());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonBlockingSource() throws IOException {
+        Pipe pipe = Pipe.open();
+        try (Pipe.SourceChannel source = pipe.source(); Pipe.SinkChannel ignored = pipe.sink()) {
+            source.configureBlocking(false);
+            new LoopPublisher(source, Runnable::run, 10);
+        }
+    }
+
+    private static class CollectingSubscriber implements LoopPublisher.Subscriber {
+
+        private final int requestSize;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private LoopPublisher.Subscription subscription;
+        private int chunks;
+
+        CollectingSubscriber(int requestSize) {
+            this.requestSize = requestSize;
+        }
+
+        @Override
+        public void onSubscribe(LoopPublisher.Subscription subscription) {
+            this.subscription = subscription;
+            if(requestSize > 0) {
+                subscription.request(requestSize);
+            }
+        }
+
+        @Override
+        public void onNext(ByteBuffer chunk) {
+            chunks++;
+            bytes.write(chunk.array(), chunk.position(), chunk.remaining());
+            if(requestSize > 0) {
+                subscription.request(requestSize);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error.set(error);
+            finished.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            finished.countDown();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import org.jglr.flows.looping.LoopPlan;
+import org.jglr.flows.looping.LoopingFileChannel;
+import org.jglr.flows.looping.StreamLoop;
+import org.jglr.flows.looping.defaults.RepeatStreamLoop;
+import org.jglr.flows.looping.defaults.WhileStreamLoop;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+
+public class LoopingFileChannelTests {
+
+    private static final byte[] DIGITS = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void repeatThenContinue() throws IOException {
+        assertLoops("01234234234" + "56789", () -> new RepeatStreamLoop(2, 5, 3, false));
+    }
+
+    @Test
+    public void repeatThenStop() throws IOException {
+        assertLoops("01234234234", () -> new RepeatStreamLoop(2, 5, 3));
+    }
+
+    @Test
+    public void repeatWholeFile() throws IOException {
+        assertLoops("0123456789" + "0123456789" + "0123456789", () -> new RepeatStreamLoop(0, Long.MAX_VALUE, 3));
+    }
+
+    @Test
+    public void whileLoop() throws IOException {
+        assertLoops("0123", () -> new WhileStreamLoop(0, Long.MAX_VALUE, c -> c < 4));
+    }
+
+    @Test
+    public void plan() throws IOException {
+        assertPlays("01" + "234234" + "5777" + "5777" + "9", () -> LoopPlan.builder()
+                .play(0, 2)
+                .loop(new RepeatStreamLoop(2, 5, 2, false))
+                .loop(new WhileStreamLoop(3, 4, c -> false))
+                .beginLoop(new RepeatStreamLoop(0, 0, 2))
+                    .play(5, 6)
+                    .loop(new RepeatStreamLoop(7, 8, 3))
+                .endLoop()
+                .play(9, Long.MAX_VALUE)
+                .build());
+    }
+
+    @Test
+    public void planReadAgain() throws IOException {
+        LoopPlan plan = LoopPlan.builder()
+                .play(0, 2)
+                .loop(new RepeatStreamLoop(2, 5, 2, false))
+                .play(5, Long.MAX_VALUE)
+                .build();
+        // the same plan is read by every channel
+        assertPlays("01" + "234234" + "56789", () -> plan);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void emptyLoopBody() {
+        LoopPlan.builder().beginLoop(new RepeatStreamLoop(0, 0, 2)).endLoop();
+    }
+
+    private static void assertLoops(String expected, Supplier<StreamLoop> loop) throws IOException {
+        assertReads(expected, channel -> channel.setCurrentLoop(loop.get()));
+    }
+
+    private static void assertPlays(String expected, Supplier<LoopPlan> plan) throws IOException {
+        assertReads(expected, channel -> channel.setLoopPlan(plan.get()));
+    }
+
+    private static void assertReads(String expected, Consumer<LoopingFileChannel> setup) throws IOException {
+        Path file = Files.createTempFile("looping", ".bin");
+        try {
+            Files.write(file, DIGITS);
+            for (int size : new int[]{1, 2, 3, 7, 1024}) {
+                try (LoopingFileChannel channel = LoopingFileChannel.open(file)) {
+                    setup.accept(channel);
+                    assertEquals("Buffer of "+size+" bytes", expected, readAll(channel, size));
+                }
+                try (LoopingFileChannel channel = LoopingFileChannel.open(file)) {
+                    setup.accept(channel);
+                    assertEquals("Transfers of "+size+" bytes", expected, transferAll(channel, size));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static String readAll(LoopingFileChannel channel, int bufferSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        while(channel.read(buffer) != -1) {
+            buffer.flip();
+            out.write(buffer.array(), 0, buffer.limit());
+            buffer.clear();
+        }
+        return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static String transferAll(LoopingFileChannel channel, int count) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        while(channel.transferTo(target, count) != -1);
+        return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+    }
+}
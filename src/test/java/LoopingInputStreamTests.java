@@ -0,0 +1,239 @@
+import org.jglr.flows.looping.LoopingInputStream;
+import org.jglr.flows.looping.PrefetchingInputStream;
+import org.jglr.flows.looping.SingleThreadLoopingInputStream;
+import org.jglr.flows.looping.StreamLoop;
+import org.jglr.flows.looping.defaults.DoStreamLoop;
+import org.jglr.flows.looping.defaults.RepeatStreamLoop;
+import org.jglr.flows.looping.defaults.WhileStreamLoop;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+
+public class LoopingInputStreamTests {
+
+    private static final byte[] DIGITS = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void repeatThenContinue() throws IOException {
+        assertLoops("01234234234" + "56789", () -> new RepeatStreamLoop(2, 5, 3, false));
+    }
+
+    @Test
+    public void repeatThenStop() throws IOException {
+        assertLoops("01234234234", () -> new RepeatStreamLoop(2, 5, 3));
+    }
+
+    @Test
+    public void repeatWholeStream() throws IOException {
+        assertLoops("0123456789" + "0123456789" + "0123456789", () -> new RepeatStreamLoop(0, Long.MAX_VALUE, 3));
+    }
+
+    @Test
+    public void doLoop() throws IOException {
+        assertLoops("0123456789", () -> new DoStreamLoop(0, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void whileLoop() throws IOException {
+        assertLoops("0123", () -> new WhileStreamLoop(0, Long.MAX_VALUE, c -> c < 4));
+    }
+
+    @Test
+    public void whileLoopAtBoundaries() throws IOException {
+        for (int size : new int[]{0, 1, 4, 1024}) {
+            int[] tests = new int[1];
+            LoopingInputStream input = newStream(new WhileStreamLoop(2, 5, p -> ++tests[0] <= 3, false, true), 0);
+            assertEquals("01" + "234234234" + "56789", readAll(input, size));
+            // when the loop is reached, then at the end of each iteration
+            assertEquals(4, tests[0]);
+        }
+    }
+
+    @Test
+    public void cachedLoopBodyIsReadOnce() throws IOException {
+        CountingInputStream source = new CountingInputStream(DIGITS);
+        LoopingInputStream input = new LoopingInputStream(source);
+        input.setLoopCacheLimit(16);
+        input.setCurrentLoop(new RepeatStreamLoop(2, 5, 100, false));
+        String expected = "01" + new String(new char[100]).replace("\0", "234") + "56789";
+        assertEquals(expected, readAll(input, 64));
+        assertEquals(DIGITS.length, source.count);
+        assertEquals(0, source.resets);
+    }
+
+    @Test
+    public void oversizedLoopBodyFallsBackToReset() throws IOException {
+        CountingInputStream source = new CountingInputStream(DIGITS);
+        LoopingInputStream input = new LoopingInputStream(source);
+        input.setLoopCacheLimit(2);
+        input.setCurrentLoop(new RepeatStreamLoop(2, 5, 3, false));
+        assertEquals("01234234234" + "56789", readAll(input, 4));
+        assertEquals(2, source.resets);
+    }
+
+    @Test
+    public void skipMatchesRead() throws IOException {
+        String full = "01" + "234234234" + "56789";
+        for (int cacheLimit : new int[]{0, 1024}) {
+            for (int n = 0; n <= full.length() + 1; n++) {
+                LoopingInputStream input = newStream(new RepeatStreamLoop(2, 5, 3, false), cacheLimit);
+                // skip in two steps, to start a skip in the middle of an iteration
+                long skipped = input.skip(n / 2);
+                skipped += input.skip(n - n / 2);
+                assertEquals(Math.min(n, full.length()), skipped);
+                assertEquals("Skipping "+n+", cache of "+cacheLimit, full.substring((int) skipped), readAll(input, 4));
+            }
+        }
+    }
+
+    @Test
+    public void skipLoopEndingPastEOF() throws IOException {
+        String full = "01234" + "56789" + "56789" + "56789";
+        for (int cacheLimit : new int[]{0, 1024}) {
+            for (int n = 0; n <= full.length() + 1; n++) {
+                LoopingInputStream input = newStream(new RepeatStreamLoop(5, 12, 3, false), cacheLimit);
+                long skipped = input.skip(n / 2);
+                skipped += input.skip(n - n / 2);
+                assertEquals(Math.min(n, full.length()), skipped);
+                assertEquals("Skipping "+n+", cache of "+cacheLimit, full.substring((int) skipped), readAll(input, 4));
+            }
+            // the whole source is shorter than a single iteration
+            LoopingInputStream input = new LoopingInputStream(new ByteArrayInputStream(new byte[2]));
+            input.setLoopCacheLimit(cacheLimit);
+            input.setCurrentLoop(new RepeatStreamLoop(0, 4, 3, false));
+            assertEquals(6, input.skip(7));
+            assertEquals(-1, input.read());
+        }
+    }
+
+    @Test
+    public void skipWholeIterations() throws IOException {
+        int count = 1_000_000;
+        CountingInputStream source = new CountingInputStream(DIGITS);
+        LoopingInputStream input = new LoopingInputStream(source);
+        input.setCurrentLoop(new RepeatStreamLoop(2, 5, count, false));
+        assertEquals('0', input.read());
+        assertEquals('1', input.read());
+        assertEquals('2', input.read());
+        assertEquals(3L * count - 2, input.skip(3L * count - 2));
+        assertEquals("456789", readAll(input, 4));
+        // the loop body was only read once, then skipped without reading it again
+        assertEquals(true, source.count <= 2 * DIGITS.length);
+
+        LoopingInputStream infinite = newStream(new DoStreamLoop(2, 5), 0);
+        infinite.read(new byte[4]);
+        assertEquals(3_000_000_000L, infinite.skip(3_000_000_000L));
+        assertEquals('4', infinite.read());
+    }
+
+    @Test
+    public void singleThread() throws IOException {
+        String expected = "01" + "234234234" + "56789";
+        for (int size : new int[]{0, 1, 4, 1024}) {
+            LoopingInputStream input = new SingleThreadLoopingInputStream(new ByteArrayInputStream(DIGITS));
+            input.setLoopCacheLimit(size);
+            input.setCurrentLoop(new RepeatStreamLoop(2, 5, 3, false));
+            assertEquals(3, input.skip(3));
+            assertEquals(expected.substring(3), readAll(input, size));
+        }
+    }
+
+    @Test
+    public void prefetch() throws IOException {
+        String expected = "01" + new String(new char[1000]).replace("\0", "234") + "56789";
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (int depth : new int[]{2, 5}) {
+                PrefetchingInputStream input = newStream(new RepeatStreamLoop(2, 5, 1000, false), 0).prefetch(executor, 7, depth);
+                assertEquals(expected, readAll(input, 4));
+                assertEquals(-1, input.read());
+                input.close();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Reads the looped digits byte per byte and with buffers of several sizes, with and without caching the loop
+     * body, which must all give the same result
+     */
+    private static void assertLoops(String expected, Supplier<StreamLoop> loop) throws IOException {
+        for (int cacheLimit : new int[]{0, 2, 1024}) {
+            assertEquals(expected, readAll(newStream(loop.get(), cacheLimit), 0));
+            for (int size : new int[]{1, 2, 3, 7, 1024}) {
+                assertEquals("Buffer of "+size+" bytes, cache of "+cacheLimit, expected, readAll(newStream(loop.get(), cacheLimit), size));
+            }
+        }
+    }
+
+    private static LoopingInputStream newStream(StreamLoop loop, int cacheLimit) {
+        LoopingInputStream input = new LoopingInputStream(new ByteArrayInputStream(DIGITS));
+        input.setLoopCacheLimit(cacheLimit);
+        input.setCurrentLoop(loop);
+        return input;
+    }
+
+    /**
+     * Counts the bytes read and the calls to reset
+     */
+    private static class CountingInputStream extends ByteArrayInputStream {
+
+        private int count;
+        private int resets;
+
+        CountingInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read() {
+            int result = super.read();
+            if(result != -1) {
+                count++;
+            }
+            return result;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            int result = super.read(b, off, len);
+            if(result > 0) {
+                count += result;
+            }
+            return result;
+        }
+
+        @Override
+        public synchronized void reset() {
+            resets++;
+            super.reset();
+        }
+    }
+
+    private static String readAll(InputStream in, int bufferSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if(bufferSize == 0) {
+            int b;
+            while((b = in.read()) != -1) {
+                out.write(b);
+            }
+        } else {
+            byte[] buffer = new byte[bufferSize];
+            int count;
+            while((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,97 @@
+import org.jglr.flows.io.MappedByteArray;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MappedByteArrayTests {
+
+    @Test
+    public void growAndReopen() throws IOException {
+        File file = File.createTempFile("flows", ".bin");
+        file.deleteOnExit();
+        try(MappedByteArray array = new MappedByteArray(file.toPath(), false, 16)) {
+            array.setByteOrder(ByteOrder.BIG_ENDIAN);
+            for (int i = 0; i < 10; i++) {
+                array.putInt(i);
+                array.put((byte) -1);
+            }
+            // spans over the first and second regions
+            array.putLong(0x0102030405060708L, 12);
+            array.putArray(new byte[40]);
+            assertEquals(90, array.length());
+            assertEquals(0x0102030405060708L, array.getLong(12));
+            array.force();
+        }
+        assertEquals(90, file.length());
+
+        try(MappedByteArray array = new MappedByteArray(file.toPath(), true, 16)) {
+            array.setByteOrder(ByteOrder.BIG_ENDIAN);
+            assertEquals(90, array.length());
+            assertEquals(0, array.getInt());
+            assertEquals(-1, array.get());
+            assertEquals(0x0102030405060708L, array.getLong(12));
+            byte[] bytes = new byte[20];
+            array.getArray(bytes, 0, 20, 10);
+            assertEquals(0x01, bytes[2]);
+        }
+    }
+
+    @Test
+    public void reopenAfterForceWithoutClose() throws IOException {
+        File file = File.createTempFile("flows", ".bin");
+        file.deleteOnExit();
+        MappedByteArray array = new MappedByteArray(file.toPath(), false, 1 << 16);
+        try {
+            array.setByteOrder(ByteOrder.BIG_ENDIAN);
+            byte[] chunk = new byte[1000];
+            Arrays.fill(chunk, (byte) 7);
+            // goes past the size kept in memory, so part of it is appended before the force
+            for (int i = 0; i < 2_000; i++) {
+                array.putArray(chunk);
+            }
+            array.putDouble(1.5, 2_000_000);
+            array.putFloat(2.5f, 2_000_008);
+            array.putArray(new byte[]{1, 2, 3}, 2_000_012);
+            array.force();
+            // the file only holds the bytes written, even before closing
+            assertEquals(2_000_015, file.length());
+
+            try(MappedByteArray reopened = new MappedByteArray(file.toPath(), true, 1 << 16)) {
+                reopened.setByteOrder(ByteOrder.BIG_ENDIAN);
+                assertEquals(2_000_015, reopened.length());
+                assertEquals(7, reopened.get(1_999_999));
+                assertEquals(1.5, reopened.getDouble(2_000_000), 0.0);
+                assertEquals(2.5f, reopened.getFloat(2_000_008), 0.0f);
+                assertEquals(3, reopened.get(2_000_014));
+            }
+
+            // writes far past the end, the bytes in between are zeros
+            array.put((byte) 9, 5_000_000);
+            assertEquals(0, array.getLong(2_000_015));
+            array.force();
+            assertEquals(5_000_001, file.length());
+        } finally {
+            array.close();
+        }
+        assertEquals(5_000_001, file.length());
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void readOnly() throws IOException {
+        File file = File.createTempFile("flows", ".bin");
+        file.deleteOnExit();
+        Files.write(file.toPath(), new byte[]{1, 2, 3, 4});
+        try(MappedByteArray array = new MappedByteArray(file.toPath(), true)) {
+            assertArrayEquals(new byte[]{1, 2}, new byte[]{array.get(), array.get()});
+            array.put((byte) 0, 0);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import org.jglr.flows.MarkableFileInputStream;
+import org.jglr.flows.looping.LoopingInputStream;
+import org.jglr.flows.looping.defaults.RepeatStreamLoop;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MarkableFileInputStreamTests {
+
+    @Test
+    public void readMarkResetAndSeek() throws IOException {
+        byte[] bytes = new byte[50_000];
+        new Random(3).nextBytes(bytes);
+        Path file = Files.createTempFile("markable", ".bin");
+        try {
+            Files.write(file, bytes);
+            try (FileInputStream fis = new FileInputStream(file.toFile())) {
+                // starts from the current position of the file stream
+                fis.skip(10);
+                MarkableFileInputStream in = new MarkableFileInputStream(fis, 64);
+                assertEquals(bytes[10] & 0xFF, in.read());
+                in.mark(0);
+                byte[] small = new byte[40];
+                assertEquals(40, in.read(small));
+                assertArrayEquals(Arrays.copyOfRange(bytes, 11, 51), small);
+                // reset inside the buffer
+                in.reset();
+                assertEquals(11, in.getPosition());
+                assertEquals(bytes[11] & 0xFF, in.read());
+
+                // larger than the buffer, read directly
+                byte[] large = new byte[1000];
+                assertEquals(1000, in.read(large));
+                assertArrayEquals(Arrays.copyOfRange(bytes, 12, 1012), large);
+                // reset outside of the buffer
+                in.reset();
+                assertEquals(bytes[11] & 0xFF, in.read());
+
+                assertEquals(30_000, in.skip(30_000));
+                assertEquals(bytes[30_012] & 0xFF, in.read());
+                in.seek(5);
+                assertEquals(bytes[5] & 0xFF, in.read());
+                in.seek(49_990);
+                assertEquals(10, in.available());
+                assertEquals(10, in.skip(100));
+                assertEquals(-1, in.read());
+                assertEquals(-1, in.read(small));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void loopsOverFile() throws IOException {
+        byte[] bytes = new byte[10_000];
+        new Random(4).nextBytes(bytes);
+        Path file = Files.createTempFile("markable", ".bin");
+        try {
+            Files.write(file, bytes);
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            expected.write(bytes, 0, 100);
+            for (int i = 0; i < 5; i++) {
+                expected.write(bytes, 100, 9_000);
+            }
+            expected.write(bytes, 9_100, 900);
+            for (int size : new int[]{1, 100, 10_000}) {
+                try (LoopingInputStream in = new LoopingInputStream(new FileInputStream(file.toFile()))) {
+                    in.setCurrentLoop(new RepeatStreamLoop(100, 9_100, 5, false));
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[size];
+                    int count;
+                    while((count = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, count);
+                    }
+                    assertArrayEquals(expected.toByteArray(), out.toByteArray());
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import org.jglr.flows.io.ByteArray;
+import org.jglr.flows.io.RingByteArray;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RingByteArrayTests {
+
+    @Test
+    public void reusesSpaceFreedByReads() {
+        RingByteArray ring = new RingByteArray(16);
+        ring.setMaxCapacity(16);
+        for (int i = 0; i < 10000; i++) {
+            ring.putInt(i);
+            ring.putLong(-i);
+            assertEquals(i, ring.getInt());
+            assertEquals(-i, ring.getLong());
+        }
+        assertEquals(16, ring.capacity());
+        assertEquals(0, ring.readableBytes());
+        assertEquals(16, ring.writableBytes());
+        // indexes are moved back instead of overflowing
+        ring.compact();
+        assertEquals(ring.getReadCursor(), ring.getWriteCursor());
+        assertEquals(true, ring.getReadCursor() < 16);
+    }
+
+    @Test
+    public void wordsAcrossTheEnd() {
+        RingByteArray ring = new RingByteArray(8);
+        ring.setByteOrder(ByteOrder.BIG_ENDIAN);
+        ring.putArray(new byte[6]);
+        ring.getArray(new byte[6]);
+        ring.putInt(0x01020304);
+        assertEquals(4, ring.readableBytes());
+        assertEquals(4, ring.writableBytes());
+        assertEquals(0x01020304, ring.getInt());
+
+        ring.putArray(new byte[]{1, 2, 3, 4, 5, 6, 7});
+        byte[] read = new byte[7];
+        ring.getArray(read);
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7}, read);
+    }
+
+    @Test
+    public void growsWhenFull() {
+        RingByteArray ring = new RingByteArray(8);
+        ring.putArray(new byte[]{1, 2, 3, 4, 5, 6});
+        ring.get();
+        ring.get();
+        // wraps around, then runs out of room
+        ring.putArray(new byte[]{7, 8, 9, 10, 11, 12});
+        assertEquals(16, ring.capacity());
+        byte[] read = new byte[10];
+        ring.getArray(read);
+        assertArrayEquals(new byte[]{3, 4, 5, 6, 7, 8, 9, 10, 11, 12}, read);
+    }
+
+    @Test
+    public void growsTwofoldWithinMaxCapacity() {
+        RingByteArray ring = new RingByteArray(16);
+        ring.putArray(new byte[17]);
+        assertEquals(32, ring.capacity());
+        ring.putArray(new byte[16]);
+        assertEquals(64, ring.capacity());
+        // rounded down to a power of two
+        ring.setMaxCapacity(100);
+        assertEquals(64, ring.getMaxCapacity());
+        ring.putArray(new byte[31]);
+        try {
+            ring.put((byte) 0);
+            throw new AssertionError("The ring should not grow past its maximum capacity");
+        } catch (IllegalStateException expected) {
+            assertEquals(64, ring.capacity());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void fixedCapacity() {
+        RingByteArray ring = new RingByteArray(8);
+        ring.setMaxCapacity(8);
+        ring.putLong(1L);
+        ring.put((byte) 0);
+    }
+
+    @Test
+    public void buffersAroundTheEnd() {
+        RingByteArray ring = new RingByteArray(8);
+        ring.putArray(new byte[]{0, 0, 0, 0, 0, 1, 2, 3});
+        ring.getArray(new byte[5]);
+        ring.putArray(new byte[]{4, 5});
+        ByteBuffer[] buffers = ring.asByteBuffers();
+        assertEquals(2, buffers.length);
+        assertEquals(3, buffers[0].remaining());
+        assertEquals(2, buffers[1].remaining());
+        ByteBuffer copy = ring.asByteBuffer();
+        byte[] contents = new byte[5];
+        copy.get(contents);
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, contents);
+    }
+
+    @Test
+    public void compactMovesReadableBytes() {
+        ByteArray array = new ByteArray(16);
+        array.putArray(new byte[]{1, 2, 3, 4, 5, 6});
+        array.getShort();
+        array.compact();
+        assertEquals(0, array.getReadCursor());
+        assertEquals(4, array.getWriteCursor());
+        assertEquals(4, array.readableBytes());
+        assertEquals(12, array.writableBytes());
+        byte[] read = new byte[4];
+        array.getArray(read);
+        assertArrayEquals(new byte[]{3, 4, 5, 6}, read);
+    }
+}
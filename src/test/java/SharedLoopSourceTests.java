@@ -0,0 +1,97 @@
+import org.jglr.flows.looping.LoopingInputStream;
+import org.jglr.flows.looping.SharedLoopSource;
+import org.jglr.flows.looping.defaults.RepeatStreamLoop;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SharedLoopSourceTests {
+
+    @Test
+    public void concurrentReaders() throws Exception {
+        byte[] bytes = new byte[200_000];
+        new Random(7).nextBytes(bytes);
+        int[] reads = new int[1];
+        InputStream counting = new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                int count = super.read(b, off, len);
+                if(count > 0) {
+                    reads[0] += count;
+                }
+                return count;
+            }
+        };
+        SharedLoopSource source = new SharedLoopSource(counting, 150_000);
+
+        ByteArrayOutputStream expectedOut = new ByteArrayOutputStream();
+        expectedOut.write(bytes, 0, 100_000);
+        for (int i = 0; i < 3; i++) {
+            expectedOut.write(bytes, 100_000, 50_000);
+        }
+        byte[] expected = expectedOut.toByteArray();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                int bufferSize = 1 + i * 997;
+                results.add(executor.submit(() -> readAll(source.newReader(new RepeatStreamLoop(100_000, 150_000, 3)), bufferSize)));
+            }
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // every byte was read once from the source, and no more than the maximum size
+        assertEquals(150_000, reads[0]);
+        assertEquals(150_000, source.getLoadedSize());
+        assertTrue(source.isComplete());
+    }
+
+    @Test
+    public void endsWithSource() throws IOException {
+        SharedLoopSource source = new SharedLoopSource(new ByteArrayInputStream(new byte[]{1, 2, 3}), 1024);
+        InputStream stream = source.newStream();
+        assertEquals(2, stream.skip(2));
+        assertEquals(3, stream.read());
+        assertEquals(-1, stream.read());
+        assertTrue(source.isComplete());
+        assertEquals(3, source.getLoadedSize());
+    }
+
+    @Test
+    public void skipToTheEnd() throws IOException {
+        SharedLoopSource source = new SharedLoopSource(new ByteArrayInputStream(new byte[100]), 64);
+        InputStream stream = source.newStream();
+        assertEquals(1, stream.skip(1));
+        // only the first 64 bytes are kept
+        assertEquals(63, stream.skip(Long.MAX_VALUE));
+        assertEquals(0, stream.skip(Long.MAX_VALUE));
+        assertEquals(-1, stream.read());
+    }
+
+    private static byte[] readAll(LoopingInputStream in, int bufferSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[bufferSize];
+        int count;
+        while((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+}